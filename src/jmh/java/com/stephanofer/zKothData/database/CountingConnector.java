@@ -0,0 +1,91 @@
+package com.stephanofer.zKothData.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts every connection borrowed from the wrapped connector, that is every round trip to the database.
+ */
+public final class CountingConnector implements DatabaseConnector {
+
+    private final DatabaseConnector delegate;
+    private final LongAdder roundTrips = new LongAdder();
+
+    public CountingConnector(DatabaseConnector delegate) {
+        this.delegate = delegate;
+    }
+
+    public long getRoundTrips() {
+        return roundTrips.sum();
+    }
+
+    @Override
+    public void closeConnection() {
+        delegate.closeConnection();
+    }
+
+    @Override
+    public void connect(ConnectionCallback callback) {
+        roundTrips.increment();
+        delegate.connect(callback);
+    }
+
+    @Override
+    public void connect(ConnectionCallback callback, boolean useTransaction) {
+        roundTrips.increment();
+        delegate.connect(callback, useTransaction);
+    }
+
+    @Override
+    public void connect(String operation, ConnectionCallback callback, boolean useTransaction) {
+        roundTrips.increment();
+        delegate.connect(operation, callback, useTransaction);
+    }
+
+    @Override
+    public Connection connect() throws SQLException {
+        roundTrips.increment();
+        return delegate.connect();
+    }
+
+    @Override
+    public int getPoolSize() {
+        return delegate.getPoolSize();
+    }
+
+    @Override
+    public QueryMetrics getQueryMetrics() {
+        return delegate.getQueryMetrics();
+    }
+
+    @Override
+    public String describePool() {
+        return delegate.describePool();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+
+    @Override
+    public CircuitBreaker getCircuitBreaker() {
+        return delegate.getCircuitBreaker();
+    }
+
+    @Override
+    public Object getLock() {
+        return delegate.getLock();
+    }
+
+    @Override
+    public boolean isFinished() {
+        return delegate.isFinished();
+    }
+
+    @Override
+    public void cleanup() {
+        delegate.cleanup();
+    }
+}
@@ -0,0 +1,23 @@
+package com.stephanofer.zKothData.database;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording a query timing from every database thread at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class LatencyHistogramBenchmark {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Benchmark
+    public void record() {
+        histogram.record(ThreadLocalRandom.current().nextLong(100_000));
+    }
+}
@@ -0,0 +1,113 @@
+package com.stephanofer.zKothData.database;
+
+import com.stephanofer.zKothData.KothDataCache;
+import com.stephanofer.zKothData.TestServer;
+import com.stephanofer.zKothData.models.KothWinDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A mass reconnect after a restart: every player misses the stats cache at once. {@link #batched} goes through
+ * {@link DatabaseManager#getPlayerStats} and the {@link PlayerStatsLoader}, {@link #perPlayer} sends one query
+ * per player as before the loader existed. The score is the time until the last player has their stats,
+ * and {@code roundTrips} counts the connections borrowed for it, on an H2 file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 30)
+public class PlayerStatsLoaderBenchmark {
+
+    @Param("500")
+    private int players;
+
+    private TestServer server;
+    private DatabaseManager manager;
+    private CountingConnector connector;
+    private final List<UUID> uuids = new ArrayList<>();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RoundTrips {
+        public long roundTrips;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            roundTrips = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        File dataFolder = Files.createTempDirectory("zkoth-jmh").toFile();
+        server = TestServer.start(dataFolder);
+        manager = server.startDatabase(delegate -> connector = new CountingConnector(delegate));
+
+        List<CompletableFuture<Boolean>> wins = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            UUID uuid = UUID.randomUUID();
+            uuids.add(uuid);
+            for (int arena = 0; arena <= i % 4; arena++) {
+                wins.add(manager.registerWinAsync(new KothWinDTO(uuid, "Player" + i, "Arena" + arena)));
+            }
+        }
+        CompletableFuture.allOf(wins.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+    }
+
+    @Setup(Level.Invocation)
+    public void disconnectEveryone() {
+        KothDataCache cache = manager.getKothDataCache();
+        for (UUID uuid : uuids) {
+            cache.invalidatePlayerStats(uuid);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public int batched(RoundTrips counters) {
+        long before = connector.getRoundTrips();
+        List<CompletableFuture<Map<String, Integer>>> loads = new ArrayList<>(players);
+        for (UUID uuid : uuids) {
+            loads.add(manager.getPlayerStats(uuid));
+        }
+        int loaded = await(loads);
+        counters.roundTrips += connector.getRoundTrips() - before;
+        return loaded;
+    }
+
+    @Benchmark
+    public int perPlayer(RoundTrips counters) {
+        long before = connector.getRoundTrips();
+        KothDataCache cache = manager.getKothDataCache();
+        List<CompletableFuture<Map<UUID, Map<String, Integer>>>> loads = new ArrayList<>(players);
+        for (UUID uuid : uuids) {
+            loads.add(manager.getDatabaseExecutor().supplyRead(
+                    () -> cache.loadPlayerStats(Collections.singleton(uuid))));
+        }
+        int loaded = await(loads);
+        counters.roundTrips += connector.getRoundTrips() - before;
+        return loaded;
+    }
+
+    private static int await(List<? extends CompletableFuture<? extends Map<?, ?>>> loads) {
+        int loaded = 0;
+        for (CompletableFuture<? extends Map<?, ?>> load : loads) {
+            loaded += load.join().size();
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,77 @@
+package com.stephanofer.zKothData.hook;
+
+import com.stephanofer.zKothData.TestServer;
+import com.stephanofer.zKothData.database.DatabaseManager;
+import com.stephanofer.zKothData.models.KothWinDTO;
+import org.bukkit.OfflinePlayer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a placeholder request once its identifier is compiled, through {@link KothStatsExpansion#onRequest}
+ * and straight on the resolver. Run with {@code -prof gc} (the default in build.gradle): gc.alloc.rate.norm
+ * should be 0 B/op for every identifier. The viewer is online, so the stats placeholders read the pinned
+ * snapshot instead of Guava's cache. PlaceholderAllocationTest asserts the same in the regular test run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PlaceholderBenchmark {
+
+    @Param({"total_wins", "wins_Spawn", "rank", "rank_Spawn", "top_1_name", "top_Spawn_3_wins",
+            "daily_total_wins", "weekly_rank", "season_top_1_name"})
+    private String identifier;
+
+    private TestServer server;
+    private KothStatsExpansion expansion;
+    private PlaceholderCompiler.Resolver resolver;
+    private OfflinePlayer player;
+    private UUID uuid;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        File dataFolder = Files.createTempDirectory("zkoth-jmh").toFile();
+        server = TestServer.start(dataFolder);
+        server.getPlugin().getConfig().set("database.write-behind.flush-interval", 1);
+        DatabaseManager manager = server.startDatabase();
+
+        uuid = UUID.randomUUID();
+        List<CompletableFuture<Boolean>> wins = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            wins.add(manager.registerWinAsync(new KothWinDTO(UUID.randomUUID(), "Player" + i, "Spawn")));
+            wins.add(manager.registerWinAsync(new KothWinDTO(uuid, "Viewer", i % 2 == 0 ? "Spawn" : "Desert")));
+        }
+        CompletableFuture.allOf(wins.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        manager.getKothDataCache().playerJoined(uuid);
+        manager.getPlayerStats(uuid).get(5, TimeUnit.SECONDS);
+
+        expansion = new KothStatsExpansion(server.getPlugin());
+        player = (OfflinePlayer) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{OfflinePlayer.class},
+                (proxy, method, args) -> method.getName().equals("getUniqueId") ? uuid : null);
+        resolver = new PlaceholderCompiler(manager.getKothDataCache(),
+                new OfflineStatsWarmer(manager, 300, 5), "...").get(identifier);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public String onRequest() {
+        return expansion.onRequest(player, identifier);
+    }
+
+    @Benchmark
+    public String resolve() {
+        return resolver.resolve(uuid);
+    }
+}
@@ -0,0 +1,68 @@
+package com.stephanofer.zKothData.leaderboard;
+
+import com.stephanofer.zKothData.models.SortedPlayer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leaderboard reads as done by the top and rank placeholders, while wins keep arriving on another thread.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LeaderboardBenchmark {
+
+    @Param({"1000", "20000"})
+    private int players;
+
+    private Leaderboard leaderboard;
+    private UUID[] uuids;
+
+    @Setup
+    public void setup() {
+        leaderboard = new Leaderboard(10);
+        uuids = new UUID[players];
+        List<SortedPlayer> rows = new ArrayList<>(players);
+        for (int i = 0; i < players; i++) {
+            uuids[i] = UUID.randomUUID();
+            rows.add(new SortedPlayer(uuids[i], "player" + i, ThreadLocalRandom.current().nextInt(1, 500)));
+        }
+        leaderboard.load(rows);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void increment() {
+        leaderboard.increment(uuids[ThreadLocalRandom.current().nextInt(players)], null, 1);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public void getTop(Blackhole blackhole) {
+        for (int position = 1; position <= 10; position++) {
+            blackhole.consume(leaderboard.getTop(position));
+        }
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public int getRank() {
+        return leaderboard.getRank(uuids[ThreadLocalRandom.current().nextInt(players)]);
+    }
+
+    @Benchmark
+    @Group("uncontended")
+    @GroupThreads(1)
+    public int getRankAlone() {
+        return leaderboard.getRank(uuids[ThreadLocalRandom.current().nextInt(players)]);
+    }
+}
@@ -0,0 +1,117 @@
+package com.stephanofer.zKothData.models;
+
+import com.stephanofer.zKothData.KothDataCache;
+import com.stephanofer.zKothData.TestServer;
+import com.stephanofer.zKothData.hook.KothStatsExpansion;
+import org.bukkit.OfflinePlayer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The real KothDataCache, built by a DatabaseManager on an H2 file with the default config: placeholder reads
+ * (getPlayerStats, getTotalWins, getTopPlayers and KothStatsExpansion.onRequest) while wins keep arriving
+ * (incrementKothWin, which also updates every leaderboard). Every player is online, so nothing is evicted.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlayerStatsBenchmark {
+
+    private static final String[] ARENAS = {"Spawn", "Desert", "Nether", "End", "Castle"};
+    private static final String[] PLACEHOLDERS = {"total_wins", "wins_Spawn", "rank", "top_1_name", "daily_rank"};
+
+    @Param({"200", "1000"})
+    private int players;
+
+    private TestServer server;
+    private KothDataCache cache;
+    private KothStatsExpansion expansion;
+    private UUID[] uuids;
+    private String[] names;
+    private OfflinePlayer[] offlinePlayers;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        File dataFolder = Files.createTempDirectory("zkoth-jmh").toFile();
+        server = TestServer.start(dataFolder);
+        cache = server.startDatabase().getKothDataCache();
+        expansion = new KothStatsExpansion(server.getPlugin());
+
+        uuids = new UUID[players];
+        names = new String[players];
+        offlinePlayers = new OfflinePlayer[players];
+        for (int i = 0; i < players; i++) {
+            UUID uuid = UUID.randomUUID();
+            uuids[i] = uuid;
+            names[i] = "player" + i;
+            offlinePlayers[i] = (OfflinePlayer) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{OfflinePlayer.class},
+                    (proxy, method, args) -> method.getName().equals("getUniqueId") ? uuid : null);
+
+            cache.playerJoined(uuid);
+            cache.setPlayerStats(uuid, Collections.emptyMap());
+            for (String arena : ARENAS) {
+                int wins = ThreadLocalRandom.current().nextInt(10);
+                for (int win = 0; win < wins; win++) {
+                    cache.incrementKothWin(uuid, names[i], arena);
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    private int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(players);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void incrementKothWin() {
+        int player = randomIndex();
+        String arena = ARENAS[ThreadLocalRandom.current().nextInt(ARENAS.length)];
+        cache.incrementKothWin(uuids[player], names[player], arena);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public int getTotalWins() {
+        return cache.getTotalWins(uuids[randomIndex()]);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public Map<String, Integer> getPlayerStats() {
+        return cache.getPlayerStats(uuids[randomIndex()]);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public List<SortedPlayer> getTopPlayers() {
+        return cache.getTopPlayers();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public String onRequest() {
+        String identifier = PLACEHOLDERS[ThreadLocalRandom.current().nextInt(PLACEHOLDERS.length)];
+        return expansion.onRequest(offlinePlayers[randomIndex()], identifier);
+    }
+}
@@ -1,17 +1,35 @@
 package com.stephanofer.zKothData;
 
-import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.stephanofer.zKothData.database.DatabaseManager;
+import com.stephanofer.zKothData.database.UnwrittenWins;
+import com.stephanofer.zKothData.leaderboard.Leaderboard;
+import com.stephanofer.zKothData.leaderboard.TimeWindow;
+import com.stephanofer.zKothData.leaderboard.WindowedLeaderboards;
+import com.stephanofer.zKothData.models.PlayerStats;
 import com.stephanofer.zKothData.models.SortedPlayer;
+import com.stephanofer.zKothData.sync.SnapshotMark;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
 
+import java.sql.SQLException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class KothDataCache {
 
@@ -20,50 +38,138 @@ public class KothDataCache {
     private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
 
 
-    private final Cache<UUID, Map<String, Integer>> playerStatsCache;
-
-    private final List<SortedPlayer> topPlayersCache;
-    private final int topPlayersExpiry;
-
-
-    private long lastTopPlayersUpdate = 0;
-    private final Object topPlayersLock = new Object();
+    private final LoadingCache<UUID, PlayerStats> playerStatsCache;
+    private final UnwrittenWins unwrittenWins;
+
+    /** Players online on this server. Their stats weigh nothing, so size-based eviction never picks them. */
+    private final Set<UUID> onlinePlayers = ConcurrentHashMap.newKeySet();
+    /**
+     * The cached stats of online players, written inside the cache's compute of the same key. Placeholders read
+     * them here, a Guava read queues an LRU node and they are requested by every scoreboard line.
+     */
+    private final Map<UUID, PlayerStats> onlineStats = new ConcurrentHashMap<>();
+    /** When each cached player went offline (or was loaded while offline), to expire them after the configured time. */
+    private final Map<UUID, Long> offlineSince = new ConcurrentHashMap<>();
+    private final long offlineExpiryMillis;
+
+    /**
+     * Read-locked while a stats snapshot is read and cached, write-locked to apply a remote win. A win never
+     * slips between the read of a snapshot and its installation, and is checked against the snapshot's mark.
+     */
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    /** Remote wins the snapshots loaded while those wins were in flight already contain. */
+    private final Map<UUID, SnapshotMark> snapshotMarks = new ConcurrentHashMap<>();
+    /**
+     * Remote wins the finished streams merged into the leaderboards, until every later event is missing from them.
+     * Guarded by the write lock.
+     */
+    private final List<SnapshotMark> streamMarks = new ArrayList<>();
+    private volatile long deliveredEvent = 0;
+    /**
+     * Streams take too long to hold the lock, so remote wins wait here until the last one finished.
+     * Both guarded by the write lock.
+     */
+    private int markedStreams = 0;
+    private final List<DeferredWin> deferredWins = new ArrayList<>();
+
+    /** Immutable top players array, replaced as a whole so readers never see a half-built list. */
+    private final AtomicReference<SortedPlayer[]> topPlayersCache = new AtomicReference<>(new SortedPlayer[0]);
+    private final AtomicBoolean topPlayersRefreshQueued = new AtomicBoolean(false);
+    private final Leaderboard leaderboard;
+    private final Map<String, Leaderboard> kothLeaderboards = new ConcurrentHashMap<>();
+    private final WindowedLeaderboards windowedLeaderboards;
+
+
+    /** False until the startup load of the leaderboards finished, placeholders wait for it. */
+    private volatile boolean warm = false;
+    private volatile long lastTopPlayersUpdate = 0;
     private final int maxTopPlayersSize;
 
-    private int cacheHits = 0;
-    private int cacheMisses = 0;
-    private int cacheUpdates = 0;
-    private int topPlayersRefreshes = 0;
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder cacheUpdates = new LongAdder();
+    private final LongAdder topPlayersRefreshes = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder expiredEvictions = new LongAdder();
 
 
-    public KothDataCache(ZKothData plugin) {
+    public KothDataCache(ZKothData plugin, DatabaseManager databaseManager) {
         this.plugin = plugin;
-        this.databaseManager = plugin.getDatabaseManager();
+        this.databaseManager = databaseManager;
+        this.unwrittenWins = databaseManager.getUnwrittenWins();
 
         ConfigurationSection cacheConfig = plugin.getConfig().getConfigurationSection("cache");
         int playerStatsExpiry = cacheConfig != null ? cacheConfig.getInt("player-stats-expiry", 5) : 5;
-        this.topPlayersExpiry = cacheConfig != null ? cacheConfig.getInt("top-players-refresh", 60) : 60;
+        long maxWeight = cacheConfig != null ? cacheConfig.getLong("player-stats-max-weight", 20000L) : 20000L;
+        this.offlineExpiryMillis = TimeUnit.MINUTES.toMillis(playerStatsExpiry);
         this.maxTopPlayersSize = cacheConfig != null ? cacheConfig.getInt("top-players-max-size", 100) : 10;
+        this.leaderboard = new Leaderboard(maxTopPlayersSize);
+        this.windowedLeaderboards = new WindowedLeaderboards(maxTopPlayersSize,
+                parseSeasonStart(plugin.getConfig().getString("stats.season-start", "")), LocalDate.now());
 
+        // Weight is one per player plus one per KotH they have won, so the bound follows the real memory use.
         this.playerStatsCache = CacheBuilder.newBuilder()
-                .maximumSize(1000)
-//                .expireAfterAccess(playerStatsExpiry, TimeUnit.MINUTES)
+                .maximumWeight(maxWeight)
+                .<UUID, PlayerStats>weigher((uuid, stats) -> onlinePlayers.contains(uuid) ? 0 : 1 + stats.asMap().size())
+                .removalListener(notification -> {
+                    if (notification.getCause() == RemovalCause.SIZE) {
+                        sizeEvictions.increment();
+                    }
+                    if (notification.getCause() != RemovalCause.REPLACED) {
+                        offlineSince.remove(notification.getKey());
+                        onlineStats.remove(notification.getKey(), notification.getValue());
+                    }
+                })
                 .recordStats()
-                .build();
-
-        //new CacheLoader<UUID, Map<String, Integer>>() {
-        //                    @Override
-        //                    public Map<String, Integer> load(UUID key) throws Exception {
-        //                        cacheMisses++;
-        //                        return databaseManager.getPlayerStats(key).get();
-        //                    }
-        //                }
+                .build(new CacheLoader<UUID, PlayerStats>() {
+                    @Override
+                    public PlayerStats load(UUID key) throws Exception {
+                        return loadAll(Collections.singleton(key)).get(key);
+                    }
+
+                    @Override
+                    public Map<UUID, PlayerStats> loadAll(Iterable<? extends UUID> keys) throws Exception {
+                        List<UUID> uuids = new ArrayList<>();
+                        keys.forEach(uuids::add);
+                        Map<UUID, PlayerStats> snapshots = new HashMap<>();
+                        // The wins still queued for the database are added to the rows, no batch commits meanwhile.
+                        Lock lock = unwrittenWins.loadLock();
+                        lock.lock();
+                        try {
+                            Map<UUID, Map<String, Integer>> stats = databaseManager.queryPlayerStats(uuids);
+                            if (stats == null) {
+                                // Thrown so the failure is not cached, the next request tries again.
+                                throw new SQLException("Could not load stats for " + uuids.size() + " players");
+                            }
+                            for (Map.Entry<UUID, Map<String, Integer>> entry : stats.entrySet()) {
+                                snapshots.put(entry.getKey(), unwrittenWins.snapshot(entry.getKey(), entry.getValue()));
+                            }
+                        } finally {
+                            lock.unlock();
+                        }
+
+                        long now = System.currentTimeMillis();
+                        for (UUID uuid : snapshots.keySet()) {
+                            if (!onlinePlayers.contains(uuid)) {
+                                offlineSince.putIfAbsent(uuid, now);
+                            }
+                        }
+                        return snapshots;
+                    }
+                });
+
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            onlinePlayers.add(player.getUniqueId());
+        }
 
+        plugin.getLogger().info("Cache initialized: Player stats expire " + playerStatsExpiry +
+                " minutes after quitting, max weight " + maxWeight + ", Top players size " + maxTopPlayersSize);
 
-        this.topPlayersCache = new ArrayList<>();
+        plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin,
+                this::expireOfflinePlayers, 400L, 400L);
 
-        plugin.getLogger().info("Cache initialized: Player stats expire after " + playerStatsExpiry +
-                " minutes, Top players refresh after " + topPlayersExpiry + " seconds");
+        plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin,
+                () -> windowedLeaderboards.rollover(LocalDate.now()), 1200L, 1200L);
 
         if (plugin.getConfig().getBoolean("debug", false)) {
             plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin,
@@ -71,91 +177,562 @@ public class KothDataCache {
         }
     }
 
+    private LocalDate parseSeasonStart(String value) {
+        if (value == null || value.isEmpty()) {
+            return WindowedLeaderboards.UNBOUNDED_SEASON;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException ex) {
+            plugin.getLogger().warning("Fecha de temporada inválida en stats.season-start: " + value);
+            return WindowedLeaderboards.UNBOUNDED_SEASON;
+        }
+    }
+
+    /**
+     * @return a read-only view of the player's wins per KotH, or null if they are not cached
+     */
     public Map<String, Integer> getPlayerStats(UUID uuid) {
-        Map<String, Integer> stats = playerStatsCache.getIfPresent(uuid);
-        if(stats != null) {
-            cacheHits++;
+        PlayerStats stats = getSnapshot(uuid);
+        return stats != null ? stats.asMap() : null;
+    }
+
+    /**
+     * @return the cached stats of the player, or null if they are not loaded
+     */
+    public PlayerStats getStatsSnapshot(UUID uuid) {
+        return getSnapshot(uuid);
+    }
+
+    private PlayerStats getSnapshot(UUID uuid) {
+        PlayerStats stats = onlineStats.get(uuid);
+        if (stats == null) {
+            stats = playerStatsCache.getIfPresent(uuid);
+        }
+        if (stats != null) {
+            cacheHits.increment();
+        } else {
+            cacheMisses.increment();
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the cached stats or loads the missing ones with a single bulk query.
+     * Blocks, so only call it from a database thread. A bulk load does not wait for loads of the same players
+     * already running elsewhere, {@link com.stephanofer.zKothData.database.PlayerStatsLoader} keeps a single
+     * one in flight per player.
+     *
+     * @throws IllegalStateException if the query failed, nothing is cached then
+     */
+    public Map<UUID, Map<String, Integer>> loadPlayerStats(Collection<UUID> uuids) {
+        Map<UUID, Map<String, Integer>> result = new HashMap<>();
+        unwrittenWins.startLoad();
+        Lock lock = snapshotLock.readLock();
+        lock.lock();
+        try {
+            for (Map.Entry<UUID, PlayerStats> entry : playerStatsCache.getAll(uuids).entrySet()) {
+                // Local wins queued while the rows were read found no snapshot to update, they are added now.
+                PlayerStats stats = playerStatsCache.asMap().computeIfPresent(entry.getKey(),
+                        (key, current) -> pin(key, unwrittenWins.catchUp(key, current)));
+                result.put(entry.getKey(), (stats != null ? stats : entry.getValue()).asMap());
+            }
+        } catch (ExecutionException | UncheckedExecutionException ex) {
+            plugin.getLogger().warning("No se pudieron cargar las estadísticas de " + uuids.size() +
+                    " jugadores: " + ex.getCause());
+            throw new IllegalStateException("Could not load stats for " + uuids.size() + " players", ex.getCause());
+        } finally {
+            lock.unlock();
+            unwrittenWins.endLoad();
+        }
+        return result;
+    }
+
+    /**
+     * Records which remote wins the snapshots just read for these players already contain.
+     * Called while the snapshot lock is held, before the snapshots are cached.
+     */
+    public void markSnapshots(Collection<UUID> uuids, SnapshotMark mark) {
+        for (UUID uuid : uuids) {
+            snapshotMarks.put(uuid, mark);
+        }
+    }
+
+    /**
+     * Pins the player's stats while they are online.
+     */
+    public void playerJoined(UUID uuid) {
+        onlinePlayers.add(uuid);
+        offlineSince.remove(uuid);
+        // Returning the same snapshot keeps its weight, reweigh() below drops it to zero
+        playerStatsCache.asMap().computeIfPresent(uuid, this::pin);
+        reweigh(uuid);
+    }
+
+    /**
+     * Unpins the player's stats, they expire after the configured time unless the player comes back.
+     */
+    public void playerQuit(UUID uuid) {
+        onlinePlayers.remove(uuid);
+        // A compute that still saw the player online finishes first, so nothing is pinned after this
+        playerStatsCache.asMap().computeIfPresent(uuid, (key, stats) -> {
+            onlineStats.remove(key);
             return stats;
-        }else {
-            cacheMisses++;
-            return null;
+        });
+        onlineStats.remove(uuid);
+        if (playerStatsCache.asMap().containsKey(uuid)) {
+            offlineSince.put(uuid, System.currentTimeMillis());
+        }
+        reweigh(uuid);
+    }
+
+    /**
+     * Publishes a snapshot to the placeholders if the player is online. Called inside the compute that installs it.
+     */
+    private PlayerStats pin(UUID uuid, PlayerStats stats) {
+        if (onlinePlayers.contains(uuid)) {
+            onlineStats.put(uuid, stats);
+        }
+        return stats;
+    }
+
+    private void reweigh(UUID uuid) {
+        // Guava only weighs an entry when it is written, so the same snapshot is written again.
+        PlayerStats stats = playerStatsCache.asMap().get(uuid);
+        if (stats != null) {
+            playerStatsCache.asMap().replace(uuid, stats, stats);
         }
     }
 
+    private void expireOfflinePlayers() {
+        long now = System.currentTimeMillis();
+        long delivered = deliveredEvent;
+        snapshotMarks.values().removeIf(mark -> mark.isSettled(delivered, now));
+        Lock lock = snapshotLock.writeLock();
+        lock.lock();
+        try {
+            streamMarks.removeIf(mark -> mark.isSettled(delivered, now));
+        } finally {
+            lock.unlock();
+        }
+
+        long cutoff = now - offlineExpiryMillis;
+        for (Map.Entry<UUID, Long> entry : offlineSince.entrySet()) {
+            UUID uuid = entry.getKey();
+            if (entry.getValue() < cutoff && !onlinePlayers.contains(uuid) && offlineSince.remove(uuid, entry.getValue())) {
+                playerStatsCache.invalidate(uuid);
+                expiredEvictions.increment();
+            }
+        }
+    }
+
+    /**
+     * @return size, weight and eviction counters of the player stats cache
+     */
+    public List<String> getCacheReport() {
+        long weight = 0;
+        for (Map.Entry<UUID, PlayerStats> entry : playerStatsCache.asMap().entrySet()) {
+            if (!onlinePlayers.contains(entry.getKey())) {
+                weight += 1 + entry.getValue().asMap().size();
+            }
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add("Player stats: " + playerStatsCache.size() + " cached, " + onlinePlayers.size() + " pinned online, " +
+                "offline weight " + weight);
+        lines.add("Evictions: size=" + sizeEvictions.sum() + ", expired after quit=" + expiredEvictions.sum());
+        return lines;
+    }
 
+    /**
+     * @return the players whose stats are cached right now
+     */
+    public List<UUID> getCachedPlayers() {
+        return new ArrayList<>(playerStatsCache.asMap().keySet());
+    }
+
+    /**
+     * Replaces the player's stats, which are taken to contain every win queued so far.
+     */
     public void setPlayerStats(UUID uuid, Map<String, Integer> stats) {
-        cacheUpdates++;
-        playerStatsCache.put(uuid, stats);
+        cacheUpdates.increment();
+        PlayerStats snapshot = PlayerStats.of(stats, unwrittenWins.lastSeq());
+        playerStatsCache.asMap().compute(uuid, (key, current) -> pin(key, snapshot));
     }
 
     public void invalidatePlayerStats(UUID uuid) {
         playerStatsCache.invalidate(uuid);
     }
 
+    /**
+     * @return a read-only view of the current top players snapshot
+     */
     public List<SortedPlayer> getTopPlayers() {
-        synchronized (topPlayersLock) {
-            if (topPlayersCache.isEmpty()) {
-                return Collections.emptyList();
+        return Collections.unmodifiableList(Arrays.asList(topPlayersCache.get()));
+    }
+
+    /**
+     * Lock-free, allocation-free read of one top position.
+     * @param position 1-based position
+     * @return the player at that position, or null if there is none
+     */
+    public SortedPlayer getTopPlayer(int position) {
+        SortedPlayer[] snapshot = topPlayersCache.get();
+        return position > 0 && position <= snapshot.length ? snapshot[position - 1] : null;
+    }
+
+    public void updateTopPlayers(List<SortedPlayer> players) {
+        int count = Math.min(players.size(), maxTopPlayersSize);
+        topPlayersCache.set(players.subList(0, count).toArray(new SortedPlayer[0]));
+        lastTopPlayersUpdate = System.currentTimeMillis();
+        topPlayersRefreshes.increment();
+    }
+
+    /**
+     * Starts merging koth_stats rows into the leaderboards. Counts are never lowered, like a reconcile.
+     *
+     * @param warmSince players last seen after this time (epoch millis) also get their stats cached,
+     *                  online players always do; 0 to cache only online players
+     * @param mark      what the streamed snapshot contains, or null without cross-server sync; remote wins are
+     *                  held back until the stream finishes
+     */
+    public StatsStream openStatsStream(long warmSince, SnapshotMark mark) {
+        unwrittenWins.startLoad();
+        if (mark != null) {
+            Lock lock = snapshotLock.writeLock();
+            lock.lock();
+            try {
+                markedStreams++;
+            } finally {
+                lock.unlock();
+            }
+        }
+        return new StatsStream(warmSince, mark);
+    }
+
+    public boolean isWarm() {
+        return warm;
+    }
+
+    public void markWarm() {
+        warm = true;
+    }
+
+    /**
+     * Receives koth_stats rows ordered by player. Only the current player's rows are held, each player is
+     * merged into the global leaderboard when their last row has been read.
+     */
+    public final class StatsStream {
+
+        private final long warmSince;
+        private final long now = System.currentTimeMillis();
+        private UUID uuid;
+        private String name;
+        private long lastSeen;
+        private Map<String, Integer> wins = new HashMap<>();
+        private int total;
+        private long rows;
+        private long players;
+        private long warmed;
+        private final SnapshotMark mark;
+        private boolean finished;
+
+        private StatsStream(long warmSince, SnapshotMark mark) {
+            this.warmSince = warmSince;
+            this.mark = mark;
+        }
+
+        public void accept(UUID playerUuid, String playerName, long playerLastSeen, String kothName, int kothWins) {
+            if (!playerUuid.equals(uuid)) {
+                finishPlayer();
+                uuid = playerUuid;
+                name = playerName;
+                lastSeen = playerLastSeen;
             }
+            rows++;
+            total += kothWins;
+            wins.merge(kothName, kothWins, Integer::sum);
+            getOrCreateKothLeaderboard(kothName).merge(new SortedPlayer(playerUuid, playerName, kothWins));
+        }
 
-            return topPlayersCache;
+        private void finishPlayer() {
+            if (uuid == null) {
+                return;
+            }
+            players++;
+            leaderboard.merge(new SortedPlayer(uuid, name, total));
+
+            boolean online = onlinePlayers.contains(uuid);
+            PlayerStats snapshot = online || (warmSince > 0 && lastSeen >= warmSince)
+                    ? unwrittenWins.snapshotIfIdle(uuid, wins) : null;
+            if (snapshot != null && playerStatsCache.asMap().putIfAbsent(uuid, snapshot) == null) {
+                playerStatsCache.asMap().computeIfPresent(uuid,
+                        (key, current) -> pin(key, unwrittenWins.catchUp(key, current)));
+                warmed++;
+                if (mark != null) {
+                    snapshotMarks.put(uuid, mark);
+                }
+                if (!online) {
+                    offlineSince.putIfAbsent(uuid, now);
+                }
+            }
+            wins = new HashMap<>();
+            total = 0;
         }
+
+        /**
+         * Merges the last player and republishes every top list, then applies the remote wins held back meanwhile.
+         * Also called when the stream failed halfway.
+         */
+        public void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            finishPlayer();
+            uuid = null;
+            unwrittenWins.endLoad();
+            if (mark != null) {
+                releaseDeferredWins(mark);
+            }
+            leaderboard.publishTop();
+            for (Leaderboard kothLeaderboard : kothLeaderboards.values()) {
+                kothLeaderboard.publishTop();
+            }
+            publishTopPlayers();
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getPlayers() {
+            return players;
+        }
+
+        public long getWarmed() {
+            return warmed;
+        }
+
     }
 
-    public void updateTopPlayers(List<SortedPlayer> players) {
-        synchronized (topPlayersLock) {
-            topPlayersCache.clear();
-            int count = Math.min(players.size(), maxTopPlayersSize);
-            topPlayersCache.addAll(players.subList(0, count));
-            lastTopPlayersUpdate = System.currentTimeMillis();
-            topPlayersRefreshes++;
+    private void releaseDeferredWins(SnapshotMark mark) {
+        Lock lock = snapshotLock.writeLock();
+        lock.lock();
+        try {
+            streamMarks.add(mark);
+            if (--markedStreams > 0) {
+                return;
+            }
+            for (DeferredWin win : deferredWins) {
+                applyRemote(win.eventId, win.uuid, win.playerName, win.kothName, win.day);
+            }
+            deferredWins.clear();
+        } finally {
+            lock.unlock();
         }
     }
 
-    public boolean needsTopPlayersRefresh() {
-        return System.currentTimeMillis() - lastTopPlayersUpdate > this.topPlayersExpiry * 1000L;
+    private static final class DeferredWin {
+        private final long eventId;
+        private final UUID uuid;
+        private final String playerName;
+        private final String kothName;
+        private final LocalDate day;
+
+        private DeferredWin(long eventId, UUID uuid, String playerName, String kothName, LocalDate day) {
+            this.eventId = eventId;
+            this.uuid = uuid;
+            this.playerName = playerName;
+            this.kothName = kothName;
+            this.day = day;
+        }
     }
 
-    public int getTotalWins(UUID uuid) {
-        Map<String, Integer> stats = getPlayerStats(uuid);
-        if (stats == null) {
-            return 0;
+    private Leaderboard getOrCreateKothLeaderboard(String kothName) {
+        return kothLeaderboards.computeIfAbsent(kothName, name -> new Leaderboard(maxTopPlayersSize));
+    }
+
+    /**
+     * @return the ranking of a single KotH, or null if nobody has won it yet
+     */
+    public Leaderboard getKothLeaderboard(String kothName) {
+        return kothLeaderboards.get(kothName);
+    }
+
+    private void publishTopPlayers() {
+        updateTopPlayers(leaderboard.top(maxTopPlayersSize));
+    }
+
+    /**
+     * Rebuilds the top players off the main thread. Wins arriving before the rebuild runs share it.
+     */
+    private void scheduleTopPlayersRefresh() {
+        if (topPlayersRefreshQueued.compareAndSet(false, true)) {
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+                topPlayersRefreshQueued.set(false);
+                publishTopPlayers();
+            });
         }
+    }
+
+    public int getRank(UUID uuid) {
+        return leaderboard.getRank(uuid);
+    }
 
-        return stats.values().stream().mapToInt(Integer::intValue).sum();
+    public int getKothRank(UUID uuid, String kothName) {
+        Leaderboard kothLeaderboard = kothLeaderboards.get(kothName);
+        return kothLeaderboard != null ? kothLeaderboard.getRank(uuid) : 0;
+    }
+
+    public int getTopPlayersSize() {
+        return maxTopPlayersSize;
+    }
+
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    public Leaderboard getWindowLeaderboard(TimeWindow window) {
+        return windowedLeaderboards.get(window);
+    }
+
+    public WindowedLeaderboards getWindowedLeaderboards() {
+        return windowedLeaderboards;
+    }
+
+    public int getWindowWins(UUID uuid, TimeWindow window) {
+        return windowedLeaderboards.get(window).getWins(uuid);
+    }
+
+    public int getTotalWins(UUID uuid) {
+        PlayerStats stats = getSnapshot(uuid);
+        return stats != null ? stats.getTotalWins() : 0;
     }
 
 
     public int getKothWins(UUID uuid, String kothName) {
-        Map<String, Integer> stats = getPlayerStats(uuid);
-        if (stats == null) {
-            return 0;
+        PlayerStats stats = getSnapshot(uuid);
+        return stats != null ? stats.getWins(kothName) : 0;
+    }
+
+
+    public void incrementKothWin(UUID uuid, String kothName) {
+        incrementKothWin(uuid, null, kothName);
+    }
+
+    public void incrementKothWin(UUID uuid, String playerName, String kothName) {
+        incrementKothWin(uuid, playerName, kothName, LocalDate.now());
+    }
+
+    public void incrementKothWin(UUID uuid, String playerName, String kothName, LocalDate day) {
+        // computeIfPresent() swaps the snapshot atomically, so two wins for the same player never overwrite each other.
+        // A player who is not cached is left alone: a one-win snapshot would hide their real totals until eviction,
+        // and would replace a load in flight. Wins that still have to be written go through applyQueuedWin().
+        if (playerStatsCache.asMap().computeIfPresent(uuid, (key, stats) -> pin(key, stats.withWin(kothName))) != null) {
+            cacheUpdates.increment();
+        }
+        incrementLeaderboards(uuid, playerName, kothName, day);
+    }
+
+    /**
+     * Applies a win of this server already added to the {@link UnwrittenWins}. A cached player gets every queued
+     * win their snapshot is missing; a player being loaded gets it from the queue with the rows, or once the
+     * snapshot is cached, so the win is not lost until the next flush.
+     */
+    public void applyQueuedWin(UUID uuid, String playerName, String kothName, LocalDate day) {
+        if (playerStatsCache.asMap().computeIfPresent(uuid,
+                (key, stats) -> pin(key, unwrittenWins.catchUp(key, stats))) != null) {
+            cacheUpdates.increment();
         }
+        incrementLeaderboards(uuid, playerName, kothName, day);
+    }
 
-        return stats.getOrDefault(kothName, 0);
+    /**
+     * Applies a win that happened on another server. Only players already cached are updated,
+     * the others get the win with their next load. A snapshot read after the win was committed already has it:
+     * its mark says so and it is left alone, or reloaded when the transport cannot tell.
+     * The leaderboards follow the same rule with the marks of the streams merged into them.
+     *
+     * @param eventId id of the event, 0 if the transport has none
+     */
+    public void applyRemoteWin(long eventId, UUID uuid, String playerName, String kothName, LocalDate day) {
+        Lock lock = snapshotLock.writeLock();
+        lock.lock();
+        try {
+            eventDelivered(eventId);
+            if (markedStreams > 0) {
+                deferredWins.add(new DeferredWin(eventId, uuid, playerName, kothName, day));
+            } else {
+                applyRemote(eventId, uuid, playerName, kothName, day);
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
+    /**
+     * Called while the write lock is held.
+     */
+    private void applyRemote(long eventId, UUID uuid, String playerName, String kothName, LocalDate day) {
+        long now = System.currentTimeMillis();
+        SnapshotMark.Coverage snapshot = coverage(snapshotMarks.get(uuid), eventId, now);
+        if (snapshot == SnapshotMark.Coverage.UNKNOWN) {
+            playerStatsCache.invalidate(uuid);
+        } else if (snapshot == SnapshotMark.Coverage.MISSING
+                && playerStatsCache.asMap().computeIfPresent(uuid, (key, stats) -> pin(key, stats.withWin(kothName))) != null) {
+            cacheUpdates.increment();
+        }
 
-    public void incrementKothWin(UUID uuid, String kothName) {
-        Map<String, Integer> stats = getPlayerStats(uuid);
-        if (stats == null) {
-            stats = new HashMap<>();
+        // Merges never lower a count, so a win that may already be merged is skipped: the next reconcile
+        // brings back one that was not, while counting it twice would last until a restart.
+        for (SnapshotMark mark : streamMarks) {
+            if (mark.coverage(eventId, now) != SnapshotMark.Coverage.MISSING) {
+                return;
+            }
         }
+        leaderboard.increment(uuid, playerName, 1);
+        getOrCreateKothLeaderboard(kothName).increment(uuid, playerName, 1);
+        // A stats load also merged the player's window totals
+        if (snapshot == SnapshotMark.Coverage.MISSING) {
+            windowedLeaderboards.increment(uuid, playerName, day);
+        }
+        scheduleTopPlayersRefresh();
+    }
+
+    private static SnapshotMark.Coverage coverage(SnapshotMark mark, long eventId, long now) {
+        return mark != null ? mark.coverage(eventId, now) : SnapshotMark.Coverage.MISSING;
+    }
 
-        int oldValue = stats.getOrDefault(kothName, 0);
-        stats.put(kothName, oldValue + 1);
-        setPlayerStats(uuid, stats);
+    /**
+     * Advances the delivered position, also for events this server sent, so settled marks can be dropped.
+     */
+    public void eventDelivered(long eventId) {
+        if (eventId > deliveredEvent) {
+            deliveredEvent = eventId;
+        }
+    }
+
+    private void incrementLeaderboards(UUID uuid, String playerName, String kothName, LocalDate day) {
+        leaderboard.increment(uuid, playerName, 1);
+        getOrCreateKothLeaderboard(kothName).increment(uuid, playerName, 1);
+        windowedLeaderboards.increment(uuid, playerName, day);
+        scheduleTopPlayersRefresh();
     }
 
     private void logCacheStatistics() {
         logInfo("=== CACHE STATISTICS ===");
         logInfo("Current time: " + getCurrentTime());
-        logInfo("Cache size: " + playerStatsCache.size() + " players");
-        logInfo("Cache hits: " + cacheHits + ", misses: " + cacheMisses +
-                ", hit ratio: " + (cacheHits + cacheMisses > 0 ?
-                (cacheHits * 100 / (cacheHits + cacheMisses)) + "%" : "N/A"));
-        logInfo("Cache updates: " + cacheUpdates);
-        logInfo("Top players refreshes: " + topPlayersRefreshes);
+        for (String line : getCacheReport()) {
+            logInfo(line);
+        }
+        long hits = cacheHits.sum();
+        long misses = cacheMisses.sum();
+        logInfo("Cache hits: " + hits + ", misses: " + misses +
+                ", hit ratio: " + (hits + misses > 0 ? (hits * 100 / (hits + misses)) + "%" : "N/A"));
+        logInfo("Cache updates: " + cacheUpdates.sum());
+        logInfo("Top players refreshes: " + topPlayersRefreshes.sum());
+        logInfo("Leaderboard size: " + leaderboard.size() + " players, " +
+                kothLeaderboards.size() + " KotH leaderboards");
         logInfo("Last top players update: " +
                 (lastTopPlayersUpdate > 0 ? getFormattedTime(lastTopPlayersUpdate) : "Never"));
         logInfo("Guava stats: " + playerStatsCache.stats().toString());
@@ -8,6 +8,7 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
 import java.util.UUID;
 
@@ -44,6 +45,7 @@ public class PlayerJoin implements Listener {
     @EventHandler(priority = EventPriority.MONITOR)
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
+        databaseManager.getKothDataCache().playerJoined(player.getUniqueId());
 
         plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
             databaseManager.registerPlayerAsync(player.getUniqueId(), player.getName());
@@ -53,4 +55,9 @@ public class PlayerJoin implements Listener {
             }
         });
     }
-}
\ No newline at end of file
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        databaseManager.getKothDataCache().playerQuit(event.getPlayer().getUniqueId());
+    }
+}
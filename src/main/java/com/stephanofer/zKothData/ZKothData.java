@@ -2,6 +2,7 @@ package com.stephanofer.zKothData;
 
 import com.stephanofer.zKothData.Listeners.onKothWin;
 import com.stephanofer.zKothData.Listeners.PlayerJoin;
+import com.stephanofer.zKothData.commands.ZKothDataCommand;
 import com.stephanofer.zKothData.database.DatabaseManager;
 import com.stephanofer.zKothData.hook.KothStatsExpansion;
 import fr.maxlego08.koth.KothPlugin;
@@ -24,23 +25,32 @@ public final class ZKothData extends JavaPlugin {
         getConfig().options().copyDefaults(true);
         saveConfig();
 
-        this.databaseManager = new DatabaseManager(this);
+        try {
+            this.databaseManager = new DatabaseManager(this);
+        } catch (IllegalStateException ex) {
+            // The connector already logged why it could not connect
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
 
-        int topLimit = getConfig().getInt("top-players.limit", 10);
-        int playerRefresh = getConfig().getInt("cache.top-players-refresh", 180);
+        int reconcileInterval = getConfig().getInt("cache.leaderboard-reconcile", 1800);
 
         getServer().getScheduler().runTaskTimerAsynchronously(this, () -> {
-            databaseManager.getTopPlayers(topLimit).thenAccept(resul -> {
+            databaseManager.reconcileLeaderboard().thenAccept(resul -> {
                 if (getConfig().getBoolean("debug", false)) {
-                    getLogger().info("Se cargó correctamente los tops");
+                    getLogger().info("Se reconcilió correctamente el ranking");
                 }
             });
-        }, 0L, playerRefresh * 20L);
+        }, reconcileInterval * 20L, reconcileInterval * 20L);
 
         getServer().getPluginManager().registerEvents(new onKothWin(this), this);
         getServer().getPluginManager().registerEvents(new PlayerJoin(this), this);
         registerPlaceholders();
 
+        ZKothDataCommand command = new ZKothDataCommand(this);
+        getCommand("zkothdata").setExecutor(command);
+        getCommand("zkothdata").setTabCompleter(command);
+
 
 
         getLogger().info("Se Inicio todo correctamente");
@@ -0,0 +1,148 @@
+package com.stephanofer.zKothData.commands;
+
+import com.stephanofer.zKothData.ZKothData;
+import com.stephanofer.zKothData.database.DatabaseExecutor;
+import com.stephanofer.zKothData.database.DatabaseManager;
+import com.stephanofer.zKothData.database.StorageType;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+public class ZKothDataCommand implements CommandExecutor, TabCompleter {
+
+    private static final List<String> SUBCOMMANDS = Arrays.asList("season", "stats", "transfer");
+
+    private final ZKothData plugin;
+
+    public ZKothDataCommand(ZKothData plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command,
+                             @NotNull String label, @NotNull String[] args) {
+        if (!sender.hasPermission("zkothdata.admin")) {
+            sender.sendMessage(ChatColor.RED + "No tienes permiso para usar este comando.");
+            return true;
+        }
+
+        if (args.length == 0) {
+            sendUsage(sender, label);
+            return true;
+        }
+
+        switch (args[0].toLowerCase()) {
+            case "season":
+                return handleSeason(sender, label, args);
+            case "stats":
+                return handleStats(sender);
+            case "transfer":
+                return handleTransfer(sender, label, args);
+            default:
+                sendUsage(sender, label);
+                return true;
+        }
+    }
+
+    private boolean handleSeason(CommandSender sender, String label, String[] args) {
+        if (args.length < 2 || !args[1].equalsIgnoreCase("reset")) {
+            sender.sendMessage(ChatColor.YELLOW + "Temporada actual desde: " + ChatColor.WHITE +
+                    plugin.getDatabaseManager().getKothDataCache().getWindowedLeaderboards().getSeasonStart());
+            sender.sendMessage(ChatColor.GRAY + "Usa /" + label + " season reset para iniciar una nueva temporada.");
+            return true;
+        }
+
+        plugin.getDatabaseManager().startNewSeason();
+        sender.sendMessage(ChatColor.GREEN + "Nueva temporada iniciada. Las estadísticas de temporada se reiniciaron.");
+        return true;
+    }
+
+    private boolean handleStats(CommandSender sender) {
+        DatabaseManager databaseManager = plugin.getDatabaseManager();
+        DatabaseExecutor executor = databaseManager.getDatabaseExecutor();
+
+        sender.sendMessage(ChatColor.GOLD + "Estadísticas de base de datos:");
+        sender.sendMessage(ChatColor.YELLOW + "Ejecutor: " + ChatColor.WHITE + executor.getActiveCount() +
+                " activos, " + executor.getQueueDepth() + " en cola");
+        for (String line : databaseManager.getQueryReport()) {
+            sender.sendMessage(ChatColor.GRAY + line);
+        }
+        sender.sendMessage(ChatColor.GOLD + "Caché:");
+        for (String line : databaseManager.getKothDataCache().getCacheReport()) {
+            sender.sendMessage(ChatColor.GRAY + line);
+        }
+        return true;
+    }
+
+    private boolean handleTransfer(CommandSender sender, String label, String[] args) {
+        DatabaseManager databaseManager = plugin.getDatabaseManager();
+        StorageType target = args.length >= 2 ? StorageType.parse(args[1], null) : null;
+        if (target == null || target == databaseManager.getStorageType()) {
+            sender.sendMessage(ChatColor.RED + "Uso: /" + label + " transfer <mysql|h2> (distinto de " +
+                    databaseManager.getStorageType().name().toLowerCase() + ")");
+            return true;
+        }
+
+        sender.sendMessage(ChatColor.YELLOW + "Copiando las estadísticas a " + target.name().toLowerCase() + "...");
+        databaseManager.transferTo(target).whenComplete((rows, ex) -> {
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                // For example the target could not be reached, the plugin keeps running on the current backend
+                sender.sendMessage(ChatColor.RED + "La transferencia falló: " + cause.getMessage());
+            } else if (rows < 0) {
+                sender.sendMessage(ChatColor.RED + "La transferencia falló, revisa la consola.");
+            } else {
+                sender.sendMessage(ChatColor.GREEN + "Transferidas " + rows + " filas. Cambia database.type a " +
+                        target.name().toLowerCase() + " y reinicia el servidor.");
+            }
+        });
+        return true;
+    }
+
+    private void sendUsage(CommandSender sender, String label) {
+        sender.sendMessage(ChatColor.GOLD + "zKoth-Data " + ChatColor.GRAY + "- comandos:");
+        sender.sendMessage(ChatColor.YELLOW + "/" + label + " season [reset]" + ChatColor.GRAY +
+                " - muestra o reinicia la temporada");
+        sender.sendMessage(ChatColor.YELLOW + "/" + label + " stats" + ChatColor.GRAY +
+                " - muestra los tiempos de las consultas");
+        sender.sendMessage(ChatColor.YELLOW + "/" + label + " transfer <mysql|h2>" + ChatColor.GRAY +
+                " - copia las estadísticas a otro almacenamiento");
+    }
+
+    @Override
+    public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command,
+                                      @NotNull String alias, @NotNull String[] args) {
+        if (!sender.hasPermission("zkothdata.admin")) {
+            return Collections.emptyList();
+        }
+        if (args.length == 1) {
+            return filter(SUBCOMMANDS, args[0]);
+        }
+        if (args.length == 2 && args[0].equalsIgnoreCase("season")) {
+            return filter(Arrays.asList("reset"), args[1]);
+        }
+        if (args.length == 2 && args[0].equalsIgnoreCase("transfer")) {
+            return filter(Arrays.asList("mysql", "h2"), args[1]);
+        }
+        return Collections.emptyList();
+    }
+
+    private List<String> filter(List<String> options, String prefix) {
+        List<String> result = new ArrayList<>();
+        for (String option : options) {
+            if (option.startsWith(prefix.toLowerCase())) {
+                result.add(option);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,96 @@
+package com.stephanofer.zKothData.database;
+
+import com.stephanofer.zKothData.ZKothData;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the repeated koth_name column of the wins and stats tables with an id into koth_arenas.
+ */
+public class ArenaDictionaryMigration implements Migration {
+
+    private final ZKothData plugin;
+    private final int chunkSize;
+
+    public ArenaDictionaryMigration(ZKothData plugin, int chunkSize) {
+        this.plugin = plugin;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    @Override
+    public int getVersion() {
+        return 3;
+    }
+
+    @Override
+    public String getDescription() {
+        return "koth_name -> koth_arenas.id";
+    }
+
+    @Override
+    public void migrate(Connection connection) throws SQLException {
+        if (ChunkedTableCopy.columnType(connection, "koth_stats", "koth_name") == null) {
+            plugin.getLogger().info("Las tablas ya usan koth_arenas, nada que migrar");
+            return;
+        }
+
+        boolean dailyHasNames = ChunkedTableCopy.columnType(connection, "koth_stats_daily", "koth_name") != null;
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(DatabaseManager.CREATE_KOTH_ARENAS_TABLE);
+            // Every table is scanned: the copies join on koth_arenas, so a name missing here would drop its rows.
+            int arenas = statement.executeUpdate("INSERT IGNORE INTO koth_arenas (name) " +
+                    "SELECT koth_name FROM koth_stats " +
+                    "UNION SELECT koth_name FROM koth_wins" +
+                    (dailyHasNames ? " UNION SELECT koth_name FROM koth_stats_daily" : ""));
+            plugin.getLogger().info("Migración: " + arenas + " KotHs registrados en koth_arenas");
+        }
+
+        List<ChunkedTableCopy> tables = new ArrayList<>();
+        tables.add(new ChunkedTableCopy("koth_wins", "id", "w.id", 0,
+                "CREATE TABLE koth_wins_new (" +
+                        "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                        "player_uuid BINARY(16) NOT NULL, " +
+                        "arena_id SMALLINT UNSIGNED NOT NULL, " +
+                        "win_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                        "FOREIGN KEY (player_uuid) REFERENCES koth_players(uuid) ON DELETE CASCADE, " +
+                        "FOREIGN KEY (arena_id) REFERENCES koth_arenas(id))",
+                "INSERT INTO koth_wins_new (id, player_uuid, arena_id, win_time) " +
+                        "SELECT w.id, w.player_uuid, a.id, w.win_time FROM koth_wins w " +
+                        "JOIN koth_arenas a ON a.name = w.koth_name %s " +
+                        "ON DUPLICATE KEY UPDATE koth_wins_new.id = koth_wins_new.id"));
+        tables.add(new ChunkedTableCopy("koth_stats", "player_uuid", "s.player_uuid", new byte[0],
+                "CREATE TABLE koth_stats_new (" +
+                        "player_uuid BINARY(16) NOT NULL, " +
+                        "arena_id SMALLINT UNSIGNED NOT NULL, " +
+                        "wins INT DEFAULT 0, " +
+                        "PRIMARY KEY (player_uuid, arena_id), " +
+                        "FOREIGN KEY (player_uuid) REFERENCES koth_players(uuid) ON DELETE CASCADE, " +
+                        "FOREIGN KEY (arena_id) REFERENCES koth_arenas(id))",
+                "INSERT INTO koth_stats_new (player_uuid, arena_id, wins) " +
+                        "SELECT s.player_uuid, a.id, s.wins FROM koth_stats s " +
+                        "JOIN koth_arenas a ON a.name = s.koth_name %s " +
+                        "ON DUPLICATE KEY UPDATE koth_stats_new.wins = VALUES(wins)"));
+        if (dailyHasNames) {
+            tables.add(new ChunkedTableCopy("koth_stats_daily", "player_uuid", "d.player_uuid", new byte[0],
+                    "CREATE TABLE koth_stats_daily_new (" +
+                            "player_uuid BINARY(16) NOT NULL, " +
+                            "arena_id SMALLINT UNSIGNED NOT NULL, " +
+                            "day DATE NOT NULL, " +
+                            "wins INT DEFAULT 0, " +
+                            "PRIMARY KEY (player_uuid, arena_id, day), " +
+                            "INDEX idx_koth_stats_daily_day (day), " +
+                            "FOREIGN KEY (player_uuid) REFERENCES koth_players(uuid) ON DELETE CASCADE, " +
+                            "FOREIGN KEY (arena_id) REFERENCES koth_arenas(id))",
+                    "INSERT INTO koth_stats_daily_new (player_uuid, arena_id, day, wins) " +
+                            "SELECT d.player_uuid, a.id, d.day, d.wins FROM koth_stats_daily d " +
+                            "JOIN koth_arenas a ON a.name = d.koth_name %s " +
+                            "ON DUPLICATE KEY UPDATE koth_stats_daily_new.wins = VALUES(wins)"));
+        }
+
+        ChunkedTableCopy.rebuild(connection, tables, chunkSize, plugin.getLogger());
+    }
+}
@@ -0,0 +1,94 @@
+package com.stephanofer.zKothData.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of the koth_arenas dictionary: KotH name to the small integer id stored in the stats tables.
+ * Ids are assigned by the database, so every server sharing it agrees on them.
+ */
+public class ArenaRegistry {
+
+    private static final String SELECT_ALL = "SELECT id, name FROM koth_arenas";
+    private static final String INSERT_ARENA = "INSERT IGNORE INTO koth_arenas (name) VALUES (?)";
+    private static final String SELECT_ID = "SELECT id FROM koth_arenas WHERE name = ?";
+
+    private final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+    private final Map<Integer, String> namesById = new ConcurrentHashMap<>();
+
+    public void load(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(SELECT_ALL);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                put(rs.getInt("id"), rs.getString("name"));
+            }
+        }
+    }
+
+    /**
+     * Returns the id of the arena, registering it in the database the first time it is seen.
+     */
+    public int resolve(Connection connection, String name) throws SQLException {
+        Integer id = idsByName.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        try (PreparedStatement stmt = connection.prepareStatement(INSERT_ARENA)) {
+            stmt.setString(1, name);
+            stmt.executeUpdate();
+        }
+
+        try (PreparedStatement stmt = connection.prepareStatement(SELECT_ID)) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Arena '" + name + "' could not be registered");
+                }
+                int newId = rs.getInt(1);
+                put(newId, name);
+                return newId;
+            }
+        }
+    }
+
+    /**
+     * Returns the arena name, reloading the dictionary if another server registered the id meanwhile.
+     */
+    public String getName(Connection connection, int id) throws SQLException {
+        String name = namesById.get(id);
+        if (name == null) {
+            load(connection);
+            name = namesById.get(id);
+        }
+        return name;
+    }
+
+    /**
+     * @return the arena name, or null if the id is not known yet
+     */
+    public String getName(int id) {
+        return namesById.get(id);
+    }
+
+    /**
+     * @return the arena id, or -1 if the name is not registered yet
+     */
+    public int getId(String name) {
+        Integer id = idsByName.get(name);
+        return id != null ? id : -1;
+    }
+
+    public int size() {
+        return idsByName.size();
+    }
+
+    private void put(int id, String name) {
+        namesById.put(id, name);
+        idsByName.put(name, id);
+    }
+}
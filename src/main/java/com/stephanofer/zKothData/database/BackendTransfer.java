@@ -0,0 +1,195 @@
+package com.stephanofer.zKothData.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Copies every table from one storage backend to another, in foreign key order and in pages,
+ * so a server can move between MySQL and the local H2 file without losing its stats.
+ * Pages continue after the last key read, like {@link ChunkedTableCopy}, and each one is committed on its own,
+ * so neither side holds a transaction open for the whole copy. A failed transfer empties the target again.
+ */
+public class BackendTransfer {
+
+    private static final List<TableSpec> TABLES = Arrays.asList(
+            new TableSpec("koth_players", "uuid, name, last_seen", "uuid", null),
+            new TableSpec("koth_arenas", "id, name", "id", "id"),
+            new TableSpec("koth_wins", "id, player_uuid, arena_id, win_time", "id", "id"),
+            new TableSpec("koth_stats", "player_uuid, arena_id, wins", "player_uuid, arena_id", null),
+            new TableSpec("koth_stats_daily", "player_uuid, arena_id, day, wins", "player_uuid, arena_id, day", null),
+            new TableSpec("koth_journal", "server_id, last_seq", "server_id", null));
+
+    private final DatabaseConnector source;
+    private final DatabaseConnector target;
+    private final StorageType targetType;
+    private final int pageSize;
+    private final Logger logger;
+
+    public BackendTransfer(DatabaseConnector source, DatabaseConnector target, StorageType targetType,
+                           int pageSize, Logger logger) {
+        this.source = source;
+        this.target = target;
+        this.targetType = targetType;
+        this.pageSize = Math.max(1, pageSize);
+        this.logger = logger;
+    }
+
+    /**
+     * Creates the schema on the target and copies all rows. The target must not hold any stats yet.
+     *
+     * @return the number of rows copied, or -1 if the transfer failed
+     */
+    public long run() {
+        AtomicBoolean success = new AtomicBoolean(false);
+        AtomicLong copied = new AtomicLong();
+
+        source.connect("transfer", from -> target.connect("transfer", to -> {
+            DatabaseManager.createSchema(to, targetType);
+            try (Statement statement = to.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT 1 FROM koth_players LIMIT 1")) {
+                if (rs.next()) {
+                    throw new SQLException("La base de datos de destino ya contiene datos");
+                }
+            }
+
+            for (TableSpec table : TABLES) {
+                long rows = copy(from, to, table);
+                copied.addAndGet(rows);
+                logger.info("Transferencia: " + table.name + " " + rows + " filas");
+            }
+            success.set(true);
+        }, true), false);
+
+        if (!success.get()) {
+            clearTarget();
+            return -1;
+        }
+        return copied.get();
+    }
+
+    /**
+     * Removes the pages committed before a failure, so the transfer can simply be run again.
+     */
+    private void clearTarget() {
+        target.connect("transfer", to -> {
+            try (Statement statement = to.createStatement()) {
+                for (int i = TABLES.size() - 1; i >= 0; i--) {
+                    statement.executeUpdate("DELETE FROM " + TABLES.get(i).name);
+                }
+            }
+        }, true);
+    }
+
+    private long copy(Connection from, Connection to, TableSpec table) throws SQLException {
+        int columns = table.columns.split(",").length;
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < columns; i++) {
+            placeholders.append(i > 0 ? ", ?" : "?");
+        }
+
+        String select = "SELECT " + table.columns + " FROM " + table.name;
+        String order = " ORDER BY " + String.join(", ", table.keys) + " LIMIT " + pageSize;
+        String first = select + order;
+        String next = select + " WHERE " + afterKey(table.keys) + order;
+        String insert = "INSERT INTO " + table.name + " (" + table.columns + ") VALUES (" + placeholders + ")";
+
+        long rows = 0;
+        long maxId = 0;
+        Object[] lastKey = null;
+        try (PreparedStatement readFirst = from.prepareStatement(first);
+             PreparedStatement readNext = from.prepareStatement(next);
+             PreparedStatement write = to.prepareStatement(insert)) {
+            while (true) {
+                PreparedStatement read = lastKey == null ? readFirst : readNext;
+                if (lastKey != null) {
+                    bindAfterKey(read, lastKey);
+                }
+                int page = 0;
+                try (ResultSet rs = read.executeQuery()) {
+                    while (rs.next()) {
+                        for (int i = 1; i <= columns; i++) {
+                            write.setObject(i, rs.getObject(i));
+                        }
+                        write.addBatch();
+                        if (table.identity != null) {
+                            maxId = Math.max(maxId, rs.getLong(table.identity));
+                        }
+                        if (lastKey == null) {
+                            lastKey = new Object[table.keys.length];
+                        }
+                        for (int i = 0; i < table.keys.length; i++) {
+                            lastKey[i] = rs.getObject(table.keys[i]);
+                        }
+                        page++;
+                    }
+                }
+                if (page == 0) {
+                    break;
+                }
+                write.executeBatch();
+                to.commit();
+                rows += page;
+                if (page < pageSize) {
+                    break;
+                }
+            }
+        }
+
+        if (table.identity != null && maxId > 0) {
+            String restart = targetType.restartIdentity(table.name, table.identity, maxId + 1);
+            if (restart != null) {
+                try (Statement statement = to.createStatement()) {
+                    statement.executeUpdate(restart);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return the condition matching rows ordered after a key, expanded column by column
+     * so composite primary keys still read as an index range: k1 > ? OR (k1 = ? AND k2 > ?) ...
+     */
+    private static String afterKey(String[] keys) {
+        StringBuilder where = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            where.append(i > 0 ? " OR (" : "(");
+            for (int j = 0; j < i; j++) {
+                where.append(keys[j]).append(" = ? AND ");
+            }
+            where.append(keys[i]).append(" > ?)");
+        }
+        return where.toString();
+    }
+
+    private static void bindAfterKey(PreparedStatement statement, Object[] lastKey) throws SQLException {
+        int index = 1;
+        for (int i = 0; i < lastKey.length; i++) {
+            for (int j = 0; j <= i; j++) {
+                statement.setObject(index++, lastKey[j]);
+            }
+        }
+    }
+
+    private static final class TableSpec {
+        private final String name;
+        private final String columns;
+        private final String[] keys;
+        private final String identity;
+
+        private TableSpec(String name, String columns, String keys, String identity) {
+            this.name = name;
+            this.columns = columns;
+            this.keys = keys.split(",\\s*");
+            this.identity = identity;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.stephanofer.zKothData.database;
+
+import com.stephanofer.zKothData.ZKothData;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts every UUID column from VARCHAR(36) to BINARY(16), rebuilding the tables with {@link ChunkedTableCopy}.
+ */
+public class BinaryUuidMigration implements Migration {
+
+    private static final String TO_BINARY = "UNHEX(REPLACE(%s, '-', ''))";
+
+    private final ZKothData plugin;
+    private final int chunkSize;
+
+    public BinaryUuidMigration(ZKothData plugin, int chunkSize) {
+        this.plugin = plugin;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    @Override
+    public int getVersion() {
+        return 2;
+    }
+
+    @Override
+    public String getDescription() {
+        return "UUID VARCHAR(36) -> BINARY(16)";
+    }
+
+    @Override
+    public void migrate(Connection connection) throws SQLException {
+        String type = ChunkedTableCopy.columnType(connection, "koth_players", "uuid");
+        if (type == null || type.equalsIgnoreCase("binary")) {
+            plugin.getLogger().info("Las tablas ya usan UUID binarios, nada que migrar");
+            return;
+        }
+
+        List<ChunkedTableCopy> tables = new ArrayList<>();
+        tables.add(new ChunkedTableCopy("koth_players", "uuid", "uuid", "",
+                "CREATE TABLE koth_players_new (" +
+                        "uuid BINARY(16) PRIMARY KEY, " +
+                        "name VARCHAR(16) NOT NULL, " +
+                        "last_seen TIMESTAMP DEFAULT CURRENT_TIMESTAMP)",
+                "INSERT INTO koth_players_new (uuid, name, last_seen) " +
+                        "SELECT " + String.format(TO_BINARY, "uuid") + ", name, last_seen FROM koth_players %s " +
+                        "ON DUPLICATE KEY UPDATE koth_players_new.name = VALUES(name), " +
+                        "koth_players_new.last_seen = VALUES(last_seen)"));
+        tables.add(new ChunkedTableCopy("koth_wins", "id", "id", 0,
+                "CREATE TABLE koth_wins_new (" +
+                        "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                        "player_uuid BINARY(16) NOT NULL, " +
+                        "koth_name VARCHAR(64) NOT NULL, " +
+                        "win_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                        "FOREIGN KEY (player_uuid) REFERENCES koth_players_new(uuid) ON DELETE CASCADE)",
+                "INSERT INTO koth_wins_new (id, player_uuid, koth_name, win_time) " +
+                        "SELECT id, " + String.format(TO_BINARY, "player_uuid") + ", koth_name, win_time FROM koth_wins %s " +
+                        "ON DUPLICATE KEY UPDATE koth_wins_new.id = koth_wins_new.id"));
+        tables.add(new ChunkedTableCopy("koth_stats", "player_uuid", "player_uuid", "",
+                "CREATE TABLE koth_stats_new (" +
+                        "player_uuid BINARY(16) NOT NULL, " +
+                        "koth_name VARCHAR(64) NOT NULL, " +
+                        "wins INT DEFAULT 0, " +
+                        "PRIMARY KEY (player_uuid, koth_name), " +
+                        "FOREIGN KEY (player_uuid) REFERENCES koth_players_new(uuid) ON DELETE CASCADE)",
+                "INSERT INTO koth_stats_new (player_uuid, koth_name, wins) " +
+                        "SELECT " + String.format(TO_BINARY, "player_uuid") + ", koth_name, wins FROM koth_stats %s " +
+                        "ON DUPLICATE KEY UPDATE koth_stats_new.wins = VALUES(wins)"));
+        if (ChunkedTableCopy.columnType(connection, "koth_stats_daily", "player_uuid") != null) {
+            tables.add(new ChunkedTableCopy("koth_stats_daily", "player_uuid", "player_uuid", "",
+                    "CREATE TABLE koth_stats_daily_new (" +
+                            "player_uuid BINARY(16) NOT NULL, " +
+                            "koth_name VARCHAR(64) NOT NULL, " +
+                            "day DATE NOT NULL, " +
+                            "wins INT DEFAULT 0, " +
+                            "PRIMARY KEY (player_uuid, koth_name, day), " +
+                            "INDEX idx_koth_stats_daily_day (day), " +
+                            "FOREIGN KEY (player_uuid) REFERENCES koth_players_new(uuid) ON DELETE CASCADE)",
+                    "INSERT INTO koth_stats_daily_new (player_uuid, koth_name, day, wins) " +
+                            "SELECT " + String.format(TO_BINARY, "player_uuid") + ", koth_name, day, wins " +
+                            "FROM koth_stats_daily %s " +
+                            "ON DUPLICATE KEY UPDATE koth_stats_daily_new.wins = VALUES(wins)"));
+        }
+
+        ChunkedTableCopy.rebuild(connection, tables, chunkSize, plugin.getLogger());
+    }
+}
@@ -0,0 +1,132 @@
+package com.stephanofer.zKothData.database;
+
+import java.sql.*;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Rebuilds a table into a "_new" copy in key-ordered chunks, so no single statement holds locks for long,
+ * and swaps the copies in with one atomic RENAME TABLE. Shared by the schema migrations.
+ * Rows written to the source after their chunk was copied are not carried over, so nothing else may write
+ * to these tables meanwhile: {@link MigrationRunner} serializes the migrating servers, the others must be stopped.
+ */
+final class ChunkedTableCopy {
+
+    private final String table;
+    private final String keyColumn;
+    private final String rangeKey;
+    private final Object lowerBound;
+    private final String createSql;
+    private final String copySql;
+
+    /**
+     * @param table      source table, the copy is created as table + "_new"
+     * @param keyColumn  indexed column of the source table used to split the chunks
+     * @param rangeKey   the key column as referenced inside copySql (it may be qualified by an alias)
+     * @param lowerBound value lower than every key
+     * @param createSql  CREATE TABLE statement of the copy
+     * @param copySql    INSERT ... SELECT from the source table, with a %s placeholder for the WHERE clause
+     */
+    ChunkedTableCopy(String table, String keyColumn, String rangeKey, Object lowerBound,
+                     String createSql, String copySql) {
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.rangeKey = rangeKey;
+        this.lowerBound = lowerBound;
+        this.createSql = createSql;
+        this.copySql = copySql;
+    }
+
+    /**
+     * Creates the copies (dropping leftovers of an interrupted run), fills them and swaps them in.
+     * Tables must be ordered parents first.
+     */
+    static void rebuild(Connection connection, List<ChunkedTableCopy> tables, int chunkSize, Logger logger)
+            throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (int i = tables.size() - 1; i >= 0; i--) {
+                statement.executeUpdate("DROP TABLE IF EXISTS " + tables.get(i).table + "_new");
+            }
+            for (ChunkedTableCopy table : tables) {
+                statement.executeUpdate(table.createSql);
+            }
+        }
+
+        for (ChunkedTableCopy table : tables) {
+            table.copy(connection, chunkSize, logger);
+        }
+
+        StringBuilder rename = new StringBuilder("RENAME TABLE ");
+        for (int i = 0; i < tables.size(); i++) {
+            String name = tables.get(i).table;
+            if (i > 0) {
+                rename.append(", ");
+            }
+            rename.append(name).append(" TO ").append(name).append("_old, ")
+                    .append(name).append("_new TO ").append(name);
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(rename.toString());
+            for (int i = tables.size() - 1; i >= 0; i--) {
+                statement.executeUpdate("DROP TABLE " + tables.get(i).table + "_old");
+            }
+        }
+    }
+
+    private void copy(Connection connection, int chunkSize, Logger logger) throws SQLException {
+        String boundarySql = "SELECT " + keyColumn + " FROM " + table +
+                " WHERE " + keyColumn + " > ? ORDER BY " + keyColumn + " LIMIT 1 OFFSET " + (chunkSize - 1);
+        String rangeSql = String.format(copySql, "WHERE " + rangeKey + " > ? AND " + rangeKey + " <= ?");
+        String tailSql = String.format(copySql, "WHERE " + rangeKey + " > ?");
+
+        Object lower = lowerBound;
+        long copied = 0;
+        long startTime = System.currentTimeMillis();
+
+        while (true) {
+            Object upper = null;
+            try (PreparedStatement stmt = connection.prepareStatement(boundarySql)) {
+                stmt.setObject(1, lower);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        upper = rs.getObject(1);
+                    }
+                }
+            }
+
+            if (upper == null) {
+                try (PreparedStatement stmt = connection.prepareStatement(tailSql)) {
+                    stmt.setObject(1, lower);
+                    copied += stmt.executeUpdate();
+                }
+                break;
+            }
+
+            try (PreparedStatement stmt = connection.prepareStatement(rangeSql)) {
+                stmt.setObject(1, lower);
+                stmt.setObject(2, upper);
+                copied += stmt.executeUpdate();
+            }
+            lower = upper;
+        }
+
+        logger.info("Migración: " + table + " copiada (" + copied + " filas afectadas) en " +
+                (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    /**
+     * @return the DATA_TYPE of the column, or null if the table or column does not exist
+     */
+    static String columnType(Connection connection, String table, String column) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT DATA_TYPE FROM information_schema.COLUMNS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?")) {
+            stmt.setString(1, table);
+            stmt.setString(2, column);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+}
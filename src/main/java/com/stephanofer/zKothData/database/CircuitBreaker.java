@@ -0,0 +1,105 @@
+package com.stephanofer.zKothData.database;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stops sending work to a database that keeps failing or stalling.
+ * After enough consecutive failures (errors or calls that waited longer than the latency threshold) the breaker opens
+ * and calls fail immediately instead of waiting for the pool timeout. Once the open period is over a single
+ * background probe checks the database (half-open) and closes the breaker again if it answers.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long latencyThresholdNanos;
+    private final long openMillis;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openUntil;
+
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public CircuitBreaker(int failureThreshold, long latencyThresholdMillis, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.latencyThresholdNanos = latencyThresholdMillis * 1_000_000L;
+        this.openMillis = Math.max(0, openMillis);
+    }
+
+    /**
+     * @return true if a call may go to the database; counts the rejection otherwise
+     */
+    public boolean allowRequest() {
+        if (state.get() == State.CLOSED) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * @param elapsedNanos how long the call waited for the database, compared with the latency threshold
+     * @return true if this result opened the breaker
+     */
+    public boolean onResult(boolean success, long elapsedNanos) {
+        if (success && (latencyThresholdNanos <= 0 || elapsedNanos < latencyThresholdNanos)) {
+            consecutiveFailures.set(0);
+            return false;
+        }
+        return consecutiveFailures.incrementAndGet() >= failureThreshold && open(State.CLOSED);
+    }
+
+    /**
+     * Moves an open breaker whose wait is over to half-open.
+     * @return true if the caller should now run the probe and report it with {@link #onProbe(boolean)}
+     */
+    public boolean tryStartProbe() {
+        return System.currentTimeMillis() >= openUntil && state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    /**
+     * @return true if the probe closed the breaker
+     */
+    public boolean onProbe(boolean success) {
+        if (!success) {
+            open(State.HALF_OPEN);
+            return false;
+        }
+        if (state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            consecutiveFailures.set(0);
+            closed.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean open(State from) {
+        openUntil = System.currentTimeMillis() + openMillis;
+        if (state.compareAndSet(from, State.OPEN)) {
+            opened.increment();
+            return true;
+        }
+        return false;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public boolean isClosed() {
+        return state.get() == State.CLOSED;
+    }
+
+    public String describe() {
+        return state.get() + " (opened=" + opened.sum() + ", closed=" + closed.sum() +
+                ", rejected=" + rejected.sum() + ", consecutive failures=" + consecutiveFailures.get() + ")";
+    }
+}
@@ -11,8 +11,32 @@ public interface DatabaseConnector {
 
     void connect(ConnectionCallback callback, boolean useTransaction);
 
+    /**
+     * Same as {@link #connect(ConnectionCallback, boolean)}, recording pool wait and execution time under the operation name.
+     */
+    void connect(String operation, ConnectionCallback callback, boolean useTransaction);
+
     Connection connect() throws SQLException;
 
+    int getPoolSize();
+
+    QueryMetrics getQueryMetrics();
+
+    /**
+     * @return connections in use, idle and threads waiting for one, for reports; null if the pool is not available
+     */
+    String describePool();
+
+    /**
+     * @return false while the circuit breaker is open and calls are rejected without touching the database
+     */
+    boolean isAvailable();
+
+    /**
+     * @return the breaker guarding this connector, or null if it has none
+     */
+    CircuitBreaker getCircuitBreaker();
+
     Object getLock();
     boolean isFinished();
     void cleanup();
@@ -0,0 +1,199 @@
+package com.stephanofer.zKothData.database;
+
+import com.stephanofer.zKothData.ZKothData;
+import com.stephanofer.zKothData.sync.SnapshotMark;
+import com.stephanofer.zKothData.sync.WinEvent;
+import com.stephanofer.zKothData.sync.WinEventTransport;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Shares wins through the koth_events table. {@link WinBatchWriter} adds one row per win in the same
+ * transaction as the win, and every server polls the rows after its cursor on the auto-increment id.
+ * <p>
+ * Ids are assigned at insert but become visible at commit, so a missing id may still show up. The poll
+ * stops at such a gap and only skips it after it stayed open for gapWaitPolls polls (a rolled back batch).
+ * For the same reason a stats snapshot is marked with the ids it could see above the cursor, not just a maximum.
+ */
+public class DatabaseEventTransport implements WinEventTransport {
+
+    private static final String SELECT_MAX_ID = "SELECT COALESCE(MAX(id), 0) FROM koth_events";
+
+    private static final String SELECT_EVENTS =
+            "SELECT id, server_id, player_uuid, player_name, arena_id, day FROM koth_events " +
+                    "WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String SELECT_VISIBLE_IDS = "SELECT id FROM koth_events WHERE id > ? ORDER BY id";
+
+    private static final String DELETE_OLD_EVENTS = "DELETE FROM koth_events WHERE created_at < ?";
+
+    private static final int MAX_EVENTS_PER_POLL = 500;
+    private static final long PRUNE_INTERVAL_MILLIS = 60_000L;
+
+    private final ZKothData plugin;
+    private final DatabaseConnector databaseConnector;
+    private final DatabaseExecutor databaseExecutor;
+    private final ArenaRegistry arenaRegistry;
+    private final CompletableFuture<Boolean> tablesReady;
+    private final long pollIntervalTicks;
+    private final long retentionMillis;
+    private final int gapWaitPolls;
+
+    private Consumer<WinEvent> listener;
+    private BukkitTask pollTask;
+    private final AtomicBoolean pollQueued = new AtomicBoolean(false);
+
+    /** Last id applied, -1 until read. Only written by the poll, which never runs twice at once. */
+    private volatile long cursor = -1;
+    private int gapPolls = 0;
+    private long lastPrune = 0;
+
+    private final LongAdder polls = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder skippedGaps = new LongAdder();
+
+    public DatabaseEventTransport(ZKothData plugin, DatabaseConnector databaseConnector, DatabaseExecutor databaseExecutor,
+                                  ArenaRegistry arenaRegistry, CompletableFuture<Boolean> tablesReady,
+                                  long pollIntervalTicks, long retentionSeconds, int gapWaitPolls) {
+        this.plugin = plugin;
+        this.databaseConnector = databaseConnector;
+        this.databaseExecutor = databaseExecutor;
+        this.arenaRegistry = arenaRegistry;
+        this.tablesReady = tablesReady;
+        this.pollIntervalTicks = Math.max(1, pollIntervalTicks);
+        this.retentionMillis = retentionSeconds * 1000L;
+        this.gapWaitPolls = Math.max(0, gapWaitPolls);
+    }
+
+    @Override
+    public void start(Consumer<WinEvent> listener) {
+        this.listener = listener;
+        this.pollTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+            if (!tablesReady.getNow(false) || !databaseConnector.isAvailable() || !pollQueued.compareAndSet(false, true)) {
+                return;
+            }
+            databaseExecutor.supplyRead(() -> {
+                poll();
+                return null;
+            }).whenComplete((ignored, ex) -> pollQueued.set(false));
+        }, pollIntervalTicks, pollIntervalTicks);
+    }
+
+    @Override
+    public void publish(WinEvent event) {
+        // The row is written by WinBatchWriter together with the win.
+    }
+
+    private void poll() {
+        polls.increment();
+        List<WinEvent> events = new ArrayList<>();
+
+        databaseConnector.connect("koth_events", connection -> {
+            if (cursor < 0) {
+                // Start from now: everything older is already in the leaderboard this server loaded.
+                try (Statement stmt = connection.createStatement();
+                     ResultSet rs = stmt.executeQuery(SELECT_MAX_ID)) {
+                    cursor = rs.next() ? rs.getLong(1) : 0;
+                }
+                return;
+            }
+
+            try (PreparedStatement stmt = connection.prepareStatement(SELECT_EVENTS)) {
+                stmt.setLong(1, cursor);
+                stmt.setInt(2, MAX_EVENTS_PER_POLL);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        long id = rs.getLong("id");
+                        if (id != cursor + 1) {
+                            if (gapPolls < gapWaitPolls) {
+                                gapPolls++;
+                                break;
+                            }
+                            skippedGaps.increment();
+                        }
+                        gapPolls = 0;
+                        cursor = id;
+                        events.add(new WinEvent(id, UuidCodec.getUuid(rs, "server_id"), UuidCodec.getUuid(rs, "player_uuid"),
+                                rs.getString("player_name"), arenaRegistry.getName(connection, rs.getInt("arena_id")),
+                                rs.getDate("day").toLocalDate()));
+                    }
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastPrune >= PRUNE_INTERVAL_MILLIS) {
+                lastPrune = now;
+                try (PreparedStatement stmt = connection.prepareStatement(DELETE_OLD_EVENTS)) {
+                    stmt.setTimestamp(1, new Timestamp(now - retentionMillis));
+                    stmt.executeUpdate();
+                }
+            }
+        }, false);
+
+        for (WinEvent event : events) {
+            listener.accept(event);
+        }
+        received.add(events.size());
+    }
+
+    /**
+     * Events up to the cursor read before the snapshot were committed before it, so it has them; above the cursor
+     * it has exactly the ids visible to its transaction. Before the first poll there is no cursor yet: the first
+     * poll skips everything up to the newest id anyway, and any gap is far younger than a full poll of events.
+     */
+    @Override
+    public SnapshotMark markSnapshot(Connection connection, long position) throws SQLException {
+        long from = position;
+        if (from < 0) {
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery(SELECT_MAX_ID)) {
+                from = Math.max(0, (rs.next() ? rs.getLong(1) : 0) - MAX_EVENTS_PER_POLL);
+            }
+        }
+
+        List<Long> visible = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(SELECT_VISIBLE_IDS)) {
+            stmt.setLong(1, from);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    visible.add(rs.getLong(1));
+                }
+            }
+        }
+        long[] included = new long[visible.size()];
+        for (int i = 0; i < included.length; i++) {
+            included[i] = visible.get(i);
+        }
+        return SnapshotMark.ofEvents(from, included);
+    }
+
+    @Override
+    public long position() {
+        return cursor;
+    }
+
+    @Override
+    public void close() {
+        if (pollTask != null) {
+            pollTask.cancel();
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "database, cursor=" + cursor + ", polls=" + polls.sum() + ", received=" + received.sum() +
+                ", skipped gaps=" + skippedGaps.sum();
+    }
+}
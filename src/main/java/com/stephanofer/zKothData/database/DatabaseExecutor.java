@@ -0,0 +1,240 @@
+package com.stephanofer.zKothData.database;
+
+import com.stephanofer.zKothData.ZKothData;
+
+import java.util.Deque;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded executor dedicated to blocking JDBC work.
+ * Threads are sized to the connection pool so a task never waits on Hikari for a connection
+ * that another task of ours is holding, and the queue is bounded so a login wave cannot grow it forever.
+ */
+public class DatabaseExecutor {
+
+    public enum OverflowPolicy {
+        /** Run the task on the submitting thread, unless that is the server main thread. */
+        CALLER_RUNS,
+        /** Fail the task immediately with a {@link RejectedExecutionException}. */
+        DROP,
+        /** Wait up to the configured block timeout for room in the queue, except on the server main thread. */
+        BLOCK;
+
+        public static OverflowPolicy parse(String value, OverflowPolicy def) {
+            if (value == null) {
+                return def;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase().replace('-', '_'));
+            } catch (IllegalArgumentException ex) {
+                return def;
+            }
+        }
+    }
+
+    private final ZKothData plugin;
+    private final ThreadPoolExecutor executor;
+    private final BlockingQueue<Runnable> queue;
+    /** Writes submitted from the main thread while the queue was full, moved to the queue as tasks finish. */
+    private final Deque<Runnable> parked = new ConcurrentLinkedDeque<>();
+    private final OverflowPolicy readPolicy;
+    private final OverflowPolicy writePolicy;
+    private final long blockTimeoutMillis;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder parkedTotal = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    public DatabaseExecutor(ZKothData plugin, int threads, int queueCapacity,
+                            OverflowPolicy readPolicy, OverflowPolicy writePolicy, long blockTimeoutMillis) {
+        this.plugin = plugin;
+        this.readPolicy = readPolicy;
+        this.writePolicy = writePolicy;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "zKothData-DB-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        int size = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS,
+                queue, threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.prestartAllCoreThreads();
+    }
+
+    public <T> CompletableFuture<T> supplyRead(Supplier<T> task) {
+        return submit(task, readPolicy, false);
+    }
+
+    public <T> CompletableFuture<T> supplyWrite(Supplier<T> task) {
+        return submit(task, writePolicy, true);
+    }
+
+    public CompletableFuture<Void> runWrite(Runnable task) {
+        return submit(() -> {
+            task.run();
+            return null;
+        }, writePolicy, true);
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task, OverflowPolicy policy, boolean write) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long enqueuedAt = System.nanoTime();
+        Runnable wrapped = () -> {
+            recordWait(System.nanoTime() - enqueuedAt);
+            try {
+                future.complete(task.get());
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            } finally {
+                completed.increment();
+                drainParked();
+            }
+        };
+
+        submitted.increment();
+        try {
+            executor.execute(wrapped);
+            recordQueueDepth();
+        } catch (RejectedExecutionException ex) {
+            handleOverflow(wrapped, future, policy, write, ex);
+        }
+        return future;
+    }
+
+    private void handleOverflow(Runnable wrapped, CompletableFuture<?> future, OverflowPolicy policy,
+                                boolean write, RejectedExecutionException ex) {
+        if (executor.isShutdown()) {
+            dropped.increment();
+            future.completeExceptionally(ex);
+            return;
+        }
+
+        if (plugin.getServer().isPrimaryThread()) {
+            // Never run JDBC on the tick or stall it: writes wait in memory for room, reads are rejected.
+            if (write) {
+                parkedTotal.increment();
+                parked.addLast(wrapped);
+                drainParked();
+            } else {
+                dropped.increment();
+                future.completeExceptionally(ex);
+            }
+            return;
+        }
+
+        switch (policy) {
+            case CALLER_RUNS:
+                callerRuns.increment();
+                wrapped.run();
+                break;
+            case BLOCK:
+                blocked.increment();
+                try {
+                    if (queue.offer(wrapped, blockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                        recordQueueDepth();
+                        return;
+                    }
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                dropped.increment();
+                future.completeExceptionally(new RejectedExecutionException(
+                        "Database queue still full after " + blockTimeoutMillis + "ms"));
+                break;
+            case DROP:
+            default:
+                dropped.increment();
+                future.completeExceptionally(ex);
+                break;
+        }
+    }
+
+    private void drainParked() {
+        Runnable next;
+        while ((next = parked.pollFirst()) != null) {
+            if (!queue.offer(next)) {
+                parked.addFirst(next);
+                return;
+            }
+            recordQueueDepth();
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        totalWaitNanos.add(waitNanos);
+        long max;
+        do {
+            max = maxWaitNanos.get();
+        } while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos));
+    }
+
+    private void recordQueueDepth() {
+        int depth = queue.size();
+        int max;
+        do {
+            max = maxQueueDepth.get();
+        } while (depth > max && !maxQueueDepth.compareAndSet(max, depth));
+    }
+
+    /**
+     * Stops accepting work and waits for queued and running tasks to finish.
+     * @return true if everything drained before the timeout
+     */
+    public boolean shutdown(long timeoutMillis) {
+        executor.shutdown();
+        try {
+            if (executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                // Writes still parked when the workers stopped run here, they must not be lost.
+                Runnable next;
+                while ((next = parked.pollFirst()) != null) {
+                    next.run();
+                }
+                return true;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        int pending = executor.shutdownNow().size() + parked.size();
+        parked.clear();
+        plugin.getLogger().warning("Database executor did not drain in " + timeoutMillis +
+                "ms, " + pending + " queued tasks discarded");
+        return false;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public void logStatistics() {
+        long done = completed.sum();
+        double avgWait = done > 0 ? totalWaitNanos.sum() / (double) done / 1_000_000.0 : 0.0;
+
+        plugin.getLogger().info(String.format(
+                "Executor: threads=%d active=%d | queue=%d (max %d/%d) | submitted=%d completed=%d",
+                executor.getPoolSize(), executor.getActiveCount(), queue.size(), maxQueueDepth.get(),
+                queue.size() + queue.remainingCapacity(), submitted.sum(), done));
+        plugin.getLogger().info(String.format(
+                "Executor: wait avg=%.2fms max=%.2fms | caller-runs=%d blocked=%d parked=%d dropped=%d",
+                avgWait, maxWaitNanos.get() / 1_000_000.0, callerRuns.sum(), blocked.sum(), parkedTotal.sum(),
+                dropped.sum()));
+    }
+}
@@ -2,103 +2,372 @@ package com.stephanofer.zKothData.database;
 
 import com.stephanofer.zKothData.KothDataCache;
 import com.stephanofer.zKothData.ZKothData;
+import com.stephanofer.zKothData.leaderboard.TimeWindow;
+import com.stephanofer.zKothData.leaderboard.WindowedLeaderboards;
 import com.stephanofer.zKothData.models.KothWinDTO;
 import com.stephanofer.zKothData.models.SortedPlayer;
+import com.stephanofer.zKothData.sync.PluginMessageTransport;
+import com.stephanofer.zKothData.sync.WinEventBus;
+import com.stephanofer.zKothData.sync.WinEventTransport;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.*;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.*;
 import java.util.Date;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 
 public class DatabaseManager {
 
     private final ZKothData plugin;
     private final DatabaseConnector databaseConnector;
+    private final DatabaseConnector replicaConnector;
+    private final long stalenessGuardMillis;
+    private final Map<UUID, Long> primaryReadsUntil = new ConcurrentHashMap<>();
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder replicaFallbacks = new LongAdder();
+    private final LongAdder guardedReads = new LongAdder();
+    private final DatabaseExecutor databaseExecutor;
+    private final WinBatchWriter winBatchWriter;
+    private final UnwrittenWins unwrittenWins = new UnwrittenWins();
+    private final WinEventBus winEventBus;
+    private final PlayerRegistrationBuffer registrationBuffer;
+    private final PlayerStatsLoader statsLoader;
+    private final int statsQueryChunkSize;
     private final KothDataCache kothDataCache;
+    private final ArenaRegistry arenaRegistry = new ArenaRegistry();
+    private final StorageType storageType;
+    private final long shutdownTimeout;
+    private final int warmupFetchSize;
+    private final long warmupRecentMillis;
+    private CompletableFuture<Boolean> tablesReady;
 
     private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
 
-    private final Map<String, Long> queryTotalTime = new HashMap<>();
-    private final Map<String, Integer> queryCount = new HashMap<>();
 
     private static final String CREATE_KOTH_PLAYERS_TABLE =
             "CREATE TABLE IF NOT EXISTS koth_players (" +
-                    "uuid VARCHAR(36) PRIMARY KEY, " +
+                    "uuid BINARY(16) PRIMARY KEY, " +
                     "name VARCHAR(16) NOT NULL, " +
                     "last_seen TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
                     ");";
 
+    static final String CREATE_KOTH_ARENAS_TABLE =
+            "CREATE TABLE IF NOT EXISTS koth_arenas (" +
+                    "id SMALLINT UNSIGNED AUTO_INCREMENT PRIMARY KEY, " +
+                    "name VARCHAR(64) NOT NULL UNIQUE" +
+                    ");";
+
     private static final String CREATE_KOTH_WINS_TABLE =
             "CREATE TABLE IF NOT EXISTS koth_wins (" +
                     "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                    "player_uuid VARCHAR(36) NOT NULL, " +
-                    "koth_name VARCHAR(64) NOT NULL, " +
+                    "player_uuid BINARY(16) NOT NULL, " +
+                    "arena_id SMALLINT UNSIGNED NOT NULL, " +
                     "win_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                    "FOREIGN KEY (player_uuid) REFERENCES koth_players(uuid) ON DELETE CASCADE" +
+                    "FOREIGN KEY (player_uuid) REFERENCES koth_players(uuid) ON DELETE CASCADE, " +
+                    "FOREIGN KEY (arena_id) REFERENCES koth_arenas(id)" +
                     ");";
 
     private static final String CREATE_KOTH_STATS_TABLE =
             "CREATE TABLE IF NOT EXISTS koth_stats (" +
-                    "player_uuid VARCHAR(36) NOT NULL, " +
-                    "koth_name VARCHAR(64) NOT NULL, " +
+                    "player_uuid BINARY(16) NOT NULL, " +
+                    "arena_id SMALLINT UNSIGNED NOT NULL, " +
                     "wins INT DEFAULT 0, " +
-                    "PRIMARY KEY (player_uuid, koth_name), " +
-                    "FOREIGN KEY (player_uuid) REFERENCES koth_players(uuid) ON DELETE CASCADE" +
+                    "PRIMARY KEY (player_uuid, arena_id), " +
+                    "FOREIGN KEY (player_uuid) REFERENCES koth_players(uuid) ON DELETE CASCADE, " +
+                    "FOREIGN KEY (arena_id) REFERENCES koth_arenas(id)" +
                     ");";
 
-    private static final String INSERT_PLAYER =
-            "INSERT INTO koth_players (uuid, name) VALUES (?, ?) " +
-                    "ON DUPLICATE KEY UPDATE name = ?, last_seen = CURRENT_TIMESTAMP";
-
-    private static final String INSERT_WIN =
-            "INSERT INTO koth_wins (player_uuid, koth_name) VALUES (?, ?)";
+    private static final String CREATE_KOTH_STATS_DAILY_TABLE =
+            "CREATE TABLE IF NOT EXISTS koth_stats_daily (" +
+                    "player_uuid BINARY(16) NOT NULL, " +
+                    "arena_id SMALLINT UNSIGNED NOT NULL, " +
+                    "day DATE NOT NULL, " +
+                    "wins INT DEFAULT 0, " +
+                    "PRIMARY KEY (player_uuid, arena_id, day), " +
+                    "INDEX idx_koth_stats_daily_day (day), " +
+                    "FOREIGN KEY (player_uuid) REFERENCES koth_players(uuid) ON DELETE CASCADE, " +
+                    "FOREIGN KEY (arena_id) REFERENCES koth_arenas(id)" +
+                    ");";
 
-    private static final String UPDATE_STATS =
-            "INSERT INTO koth_stats (player_uuid, koth_name, wins) VALUES (?, ?, 1) " +
-                    "ON DUPLICATE KEY UPDATE wins = wins + 1";
+    private static final String CREATE_KOTH_JOURNAL_TABLE =
+            "CREATE TABLE IF NOT EXISTS koth_journal (" +
+                    "server_id BINARY(16) PRIMARY KEY, " +
+                    "last_seq BIGINT NOT NULL" +
+                    ");";
 
-    private static final String GET_PLAYER_STATS =
-            "SELECT k.koth_name, s.wins FROM koth_stats s " +
-                    "JOIN (SELECT DISTINCT koth_name FROM koth_wins) k " +
-                    "ON s.koth_name = k.koth_name " +
-                    "WHERE s.player_uuid = ? " +
-                    "ORDER BY s.wins DESC";
+    private static final String CREATE_KOTH_EVENTS_TABLE =
+            "CREATE TABLE IF NOT EXISTS koth_events (" +
+                    "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "server_id BINARY(16) NOT NULL, " +
+                    "player_uuid BINARY(16) NOT NULL, " +
+                    "player_name VARCHAR(16) NOT NULL, " +
+                    "arena_id SMALLINT UNSIGNED NOT NULL, " +
+                    "day DATE NOT NULL, " +
+                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                    "INDEX idx_koth_events_created (created_at)" +
+                    ");";
 
-    private static final String GET_TOP_PLAYERS_QUERY =
-            "SELECT p.uuid, p.name, COALESCE(SUM(s.wins), 0) AS total_wins " +
-                    "FROM koth_players p " +
-                    "LEFT JOIN koth_stats s ON p.uuid = s.player_uuid " +
+    private static final String BACKFILL_KOTH_STATS_DAILY =
+            "INSERT INTO koth_stats_daily (player_uuid, arena_id, day, wins) " +
+                    "SELECT player_uuid, arena_id, CAST(win_time AS DATE), COUNT(*) FROM koth_wins " +
+                    "GROUP BY player_uuid, arena_id, CAST(win_time AS DATE) " +
+                    "ON DUPLICATE KEY UPDATE wins = VALUES(wins)";
+
+    // One row per player, arena and day since the earliest window start; summed per window in Java.
+    private static final String GET_PLAYER_WINDOWS_PREFIX =
+            "SELECT d.player_uuid, p.name, d.day, d.wins FROM koth_stats_daily d " +
+                    "JOIN koth_players p ON p.uuid = d.player_uuid " +
+                    "WHERE d.day >= ? AND d.player_uuid IN (";
+
+    private static final String GET_PLAYER_STATS_PREFIX =
+            "SELECT player_uuid, arena_id, wins FROM koth_stats WHERE player_uuid IN (";
+
+    // Ordered by the primary key prefix of koth_stats, so rows arrive grouped per player without a sort.
+    private static final String STREAM_STATS_QUERY =
+            "SELECT p.uuid, p.name, p.last_seen, s.arena_id, s.wins " +
+                    "FROM koth_stats s " +
+                    "JOIN koth_players p ON p.uuid = s.player_uuid " +
+                    "WHERE s.wins > 0 " +
+                    "ORDER BY s.player_uuid, s.arena_id";
+
+    private static final long WARMUP_PROGRESS_INTERVAL_MILLIS = 5000L;
+
+    private static final String GET_WINDOW_LEADERBOARD_QUERY =
+            "SELECT p.uuid, p.name, SUM(d.wins) AS total_wins " +
+                    "FROM koth_stats_daily d " +
+                    "JOIN koth_players p ON p.uuid = d.player_uuid " +
+                    "WHERE d.day >= ? " +
                     "GROUP BY p.uuid, p.name " +
                     "ORDER BY total_wins DESC " +
                     "LIMIT ?";
 
     public DatabaseManager(ZKothData plugin) {
+        this(plugin, configuredStorageType(plugin), createConnector(plugin, configuredStorageType(plugin)),
+                configuredStorageType(plugin) == StorageType.MYSQL ? createReplicaConnector(plugin) : null);
+    }
+
+    /**
+     * Runs on the given connector instead of one built from config.yml, for example one pointing at an embedded database.
+     */
+    public DatabaseManager(ZKothData plugin, StorageType storageType, DatabaseConnector databaseConnector) {
+        this(plugin, storageType, databaseConnector, null);
+    }
+
+    /**
+     * @param replicaConnector read replica for read-only queries, or null to send everything to the primary
+     */
+    public DatabaseManager(ZKothData plugin, StorageType storageType, DatabaseConnector databaseConnector,
+                           DatabaseConnector replicaConnector) {
         this.plugin = plugin;
+        this.storageType = storageType;
+        this.databaseConnector = databaseConnector;
+        this.replicaConnector = replicaConnector;
+        this.stalenessGuardMillis = plugin.getConfig().getLong("database.replica.staleness-guard", 10000L);
+
+        int queueSize = plugin.getConfig().getInt("database.executor.queue-size", 500);
+        DatabaseExecutor.OverflowPolicy readPolicy = DatabaseExecutor.OverflowPolicy.parse(
+                plugin.getConfig().getString("database.executor.read-overflow-policy"),
+                DatabaseExecutor.OverflowPolicy.CALLER_RUNS);
+        DatabaseExecutor.OverflowPolicy writePolicy = DatabaseExecutor.OverflowPolicy.parse(
+                plugin.getConfig().getString("database.executor.write-overflow-policy"),
+                DatabaseExecutor.OverflowPolicy.BLOCK);
+        long blockTimeout = plugin.getConfig().getLong("database.executor.block-timeout", 5000L);
+        this.shutdownTimeout = plugin.getConfig().getLong("database.executor.shutdown-timeout", 10000L);
+        this.warmupFetchSize = Math.max(1, plugin.getConfig().getInt("database.warmup.fetch-size", 1000));
+        this.warmupRecentMillis = plugin.getConfig().getLong("database.warmup.recent-hours", 24L) * 3_600_000L;
+
+        this.databaseExecutor = new DatabaseExecutor(plugin, databaseConnector.getPoolSize(), queueSize,
+                readPolicy, writePolicy, blockTimeout);
+        logInfo("Database executor: " + databaseConnector.getPoolSize() + " threads, queue " + queueSize +
+                ", reads " + readPolicy + ", writes " + writePolicy);
+
+        this.kothDataCache = new KothDataCache(plugin, this);
+
+        this.statsQueryChunkSize = Math.max(1, plugin.getConfig().getInt("database.stats-loader.max-batch-size", 200));
+        long statsBatchWindow = plugin.getConfig().getLong("database.stats-loader.batch-window", 1L);
+        this.statsLoader = new PlayerStatsLoader(plugin, databaseExecutor, kothDataCache,
+                statsQueryChunkSize, statsBatchWindow);
+
+        initializeTables();
+
+        int winBatchSize = plugin.getConfig().getInt("database.write-behind.batch-size", 50);
+        long winFlushInterval = plugin.getConfig().getLong("database.write-behind.flush-interval", 20L);
+        WinJournal journal = openJournal();
+        this.winBatchWriter = new WinBatchWriter(plugin, databaseConnector, databaseExecutor, arenaRegistry,
+                tablesReady, journal, unwrittenWins, winBatchSize, winFlushInterval);
+        if (journal != null && !journal.getRecovered().isEmpty()) {
+            logInfo("Replaying " + journal.getRecovered().size() + " wins from the journal");
+            winBatchWriter.submitRecovered(journal.getRecovered());
+        }
+
+        this.winEventBus = createEventBus(journal != null ? journal.getServerId() : UUID.randomUUID());
+
+        long registrationFlushInterval = plugin.getConfig().getLong("database.registration-buffer.flush-interval", 10L);
+        this.registrationBuffer = new PlayerRegistrationBuffer(plugin, databaseConnector, databaseExecutor,
+                tablesReady, registrationFlushInterval);
+
+        loadLeaderboard().whenComplete((players, ex) -> {
+            // Placeholders are released even if the load failed, the next reconcile fills the gaps.
+            kothDataCache.markWarm();
+        });
+
+        if (plugin.getConfig().getBoolean("debug", false)) {
+            plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin,
+                    this::logQueryPerformance, 6000L, 6000L);
+        }
+    }
+
+    private static StorageType configuredStorageType(ZKothData plugin) {
+        return StorageType.parse(plugin.getConfig().getString("database.type"), StorageType.MYSQL);
+    }
+
+    /**
+     * Builds a connector for the given backend from config.yml.
+     *
+     * @throws IllegalStateException if it cannot connect
+     */
+    public static DatabaseConnector createConnector(ZKothData plugin, StorageType storageType) {
+        int poolSize = plugin.getConfig().getInt("database.connection.max-pool-size", 10);
+        int connectionTimeout  = plugin.getConfig().getInt("database.connection.timeout", 5000);
+
+        if (storageType == StorageType.H2) {
+            String file = plugin.getConfig().getString("database.file", "zkothdata");
+            plugin.getLogger().info("Initializing local H2 database: " + file);
+            return new H2Connector(plugin, file, poolSize, connectionTimeout);
+        }
+
+        String username = plugin.getConfig().getString("database.username", "root");
+        String password = plugin.getConfig().getString("database.password", "");
+
+        String jdbcUrl = plugin.getConfig().getString("database.jdbc-url", "");
+        if (jdbcUrl != null && !jdbcUrl.isEmpty()) {
+            plugin.getLogger().info("Initializing database connection to " + jdbcUrl);
+            plugin.getLogger().info("Connection pool size: " + poolSize);
+            return withCircuitBreaker(plugin,
+                    new MySQLConnector(plugin, jdbcUrl, username, password, poolSize, connectionTimeout));
+        }
 
         String host = plugin.getConfig().getString("database.host", "localhost");
         int port = plugin.getConfig().getInt("database.port", 3306);
         String database = plugin.getConfig().getString("database.database", "minecraft");
-        String username = plugin.getConfig().getString("database.username", "root");
-        String password = plugin.getConfig().getString("database.password", "");
         boolean useSSL = plugin.getConfig().getBoolean("database.useSSL", false);
-        int poolSize = plugin.getConfig().getInt("database.connection.max-pool-size", 10);
-        int connectionTimeout  = plugin.getConfig().getInt("database.connection.timeout", 5000);
 
-        logInfo("Initializing database connection to MySQL: " + host + ":" + port + "/" + database);
-        logInfo("Connection pool size: " + poolSize + ", SSL: " + useSSL);
+        plugin.getLogger().info("Initializing database connection to MySQL: " + host + ":" + port + "/" + database);
+        plugin.getLogger().info("Connection pool size: " + poolSize + ", SSL: " + useSSL);
 
-        this.databaseConnector = new MySQLConnector(plugin, host, port, database,
-                username, password, useSSL, poolSize, connectionTimeout);
-        this.kothDataCache = new KothDataCache(plugin);
+        return withCircuitBreaker(plugin, new MySQLConnector(plugin, host, port, database,
+                username, password, useSSL, poolSize, connectionTimeout));
+    }
 
-        initializeTables();
+    /**
+     * Builds the read replica connector from the database.replica block, or returns null if it is disabled.
+     * Any setting left out of the block is taken from the primary.
+     */
+    public static DatabaseConnector createReplicaConnector(ZKothData plugin) {
+        if (!plugin.getConfig().getBoolean("database.replica.enabled", false)) {
+            return null;
+        }
+        int poolSize = plugin.getConfig().getInt("database.replica.max-pool-size",
+                plugin.getConfig().getInt("database.connection.max-pool-size", 10));
+        int connectionTimeout = plugin.getConfig().getInt("database.connection.timeout", 5000);
+        String username = replicaSetting(plugin, "username", "root");
+        String password = replicaSetting(plugin, "password", "");
+
+        String jdbcUrl = plugin.getConfig().getString("database.replica.jdbc-url", "");
+        if (jdbcUrl != null && !jdbcUrl.isEmpty()) {
+            plugin.getLogger().info("Initializing read replica connection to " + jdbcUrl);
+            return withCircuitBreaker(plugin,
+                    new MySQLConnector(plugin, jdbcUrl, username, password, poolSize, connectionTimeout));
+        }
 
-        if (plugin.getConfig().getBoolean("debug", false)) {
-            plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin,
-                    this::logQueryPerformance, 6000L, 6000L);
+        String host = replicaSetting(plugin, "host", "localhost");
+        int port = plugin.getConfig().getInt("database.replica.port", plugin.getConfig().getInt("database.port", 3306));
+        String database = replicaSetting(plugin, "database", "minecraft");
+        boolean useSSL = plugin.getConfig().getBoolean("database.useSSL", false);
+
+        plugin.getLogger().info("Initializing read replica connection to MySQL: " + host + ":" + port + "/" + database);
+        plugin.getLogger().info("Replica pool size: " + poolSize);
+
+        return withCircuitBreaker(plugin, new MySQLConnector(plugin, host, port, database,
+                username, password, useSSL, poolSize, connectionTimeout));
+    }
+
+    private static String replicaSetting(ZKothData plugin, String key, String def) {
+        return plugin.getConfig().getString("database.replica." + key, plugin.getConfig().getString("database." + key, def));
+    }
+
+    private static MySQLConnector withCircuitBreaker(ZKothData plugin, MySQLConnector connector) {
+        if (!plugin.getConfig().getBoolean("database.circuit-breaker.enabled", true)) {
+            return connector;
+        }
+        int failureThreshold = plugin.getConfig().getInt("database.circuit-breaker.failure-threshold", 5);
+        long latencyThreshold = plugin.getConfig().getLong("database.circuit-breaker.latency-threshold", 3000L);
+        long openDuration = plugin.getConfig().getLong("database.circuit-breaker.open-duration", 10000L);
+        long probeInterval = plugin.getConfig().getLong("database.circuit-breaker.probe-interval", 40L);
+        connector.useCircuitBreaker(new CircuitBreaker(failureThreshold, latencyThreshold, openDuration), probeInterval);
+        return connector;
+    }
+
+    /**
+     * Creates every table that does not exist yet, adapted to the backend.
+     */
+    static void createSchema(Connection connection, StorageType storageType) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(storageType.adaptDdl(CREATE_KOTH_PLAYERS_TABLE));
+            statement.executeUpdate(storageType.adaptDdl(CREATE_KOTH_ARENAS_TABLE));
+            statement.executeUpdate(storageType.adaptDdl(CREATE_KOTH_WINS_TABLE));
+            statement.executeUpdate(storageType.adaptDdl(CREATE_KOTH_STATS_TABLE));
+            statement.executeUpdate(storageType.adaptDdl(CREATE_KOTH_STATS_DAILY_TABLE));
+            statement.executeUpdate(storageType.adaptDdl(CREATE_KOTH_JOURNAL_TABLE));
+            statement.executeUpdate(storageType.adaptDdl(CREATE_KOTH_EVENTS_TABLE));
+        }
+    }
+
+    /**
+     * Builds the cross-server win bus from the sync section, or returns null if it is disabled.
+     */
+    private WinEventBus createEventBus(UUID serverId) {
+        if (!plugin.getConfig().getBoolean("sync.enabled", false)) {
+            return null;
+        }
+
+        String transportName = plugin.getConfig().getString("sync.transport", "database");
+        WinEventTransport transport;
+        if ("plugin-message".equalsIgnoreCase(transportName)) {
+            transport = new PluginMessageTransport(plugin);
+        } else {
+            transport = new DatabaseEventTransport(plugin, databaseConnector, databaseExecutor, arenaRegistry, tablesReady,
+                    plugin.getConfig().getLong("sync.poll-interval", 40L),
+                    plugin.getConfig().getLong("sync.retention", 3600L),
+                    plugin.getConfig().getInt("sync.gap-wait", 5));
+            winBatchWriter.recordEvents(serverId);
+        }
+
+        WinEventBus bus = new WinEventBus(plugin, kothDataCache, serverId, transport);
+        bus.start();
+        logInfo("Cross-server sync enabled over " + transportName + ", server id " + serverId);
+        return bus;
+    }
+
+    private WinJournal openJournal() {
+        if (!plugin.getConfig().getBoolean("database.journal.enabled", true)) {
+            return null;
+        }
+        long compactSize = plugin.getConfig().getLong("database.journal.compact-size", 1024 * 1024L);
+        try {
+            return new WinJournal(new File(plugin.getDataFolder(), "journal"), compactSize, plugin.getLogger());
+        } catch (IOException | IllegalArgumentException ex) {
+            plugin.getLogger().log(Level.SEVERE, "No se pudo abrir el journal de victorias, se guardarán sin él", ex);
+            return null;
         }
     }
 
@@ -106,16 +375,31 @@ public class DatabaseManager {
         logInfo("Initializing database tables at " + getCurrentTime());
         long startTime = System.currentTimeMillis();
 
-        CompletableFuture.supplyAsync(() -> {
+        this.tablesReady = databaseExecutor.supplyWrite(() -> {
+            if (storageType.supportsMigrations()) {
+                int chunkSize = plugin.getConfig().getInt("database.migration.chunk-size", 5000);
+                boolean migrated = new MigrationRunner(plugin, databaseConnector)
+                        .register(new BinaryUuidMigration(plugin, chunkSize))
+                        .register(new ArenaDictionaryMigration(plugin, chunkSize))
+                        .run();
+                if (!migrated) {
+                    return false;
+                }
+            }
+
             AtomicBoolean success = new AtomicBoolean(false);
-            databaseConnector.connect(connection -> {
-                try (Statement statement = connection.createStatement()) {
-                    statement.executeUpdate(CREATE_KOTH_PLAYERS_TABLE);
-                    statement.executeUpdate(CREATE_KOTH_WINS_TABLE);
-                    statement.executeUpdate(CREATE_KOTH_STATS_TABLE);
-                    success.set(true);
+            databaseConnector.connect("init_tables", connection -> {
+                createSchema(connection, storageType);
+                try (Statement statement = connection.createStatement();
+                     ResultSet rs = statement.executeQuery("SELECT 1 FROM koth_stats_daily LIMIT 1")) {
+                    if (!rs.next()) {
+                        int rows = statement.executeUpdate(BACKFILL_KOTH_STATS_DAILY);
+                        logInfo("Backfilled " + rows + " daily stats rows from koth_wins");
+                    }
                 }
-            });
+                arenaRegistry.load(connection);
+                success.set(true);
+            }, false);
             long duration = System.currentTimeMillis() - startTime;
             logInfo("Tables initialization completed in " + duration + "ms");
 
@@ -124,161 +408,488 @@ public class DatabaseManager {
     }
 
     public void close() {
+        if (winEventBus != null) {
+            winEventBus.close();
+        }
+        statsLoader.close();
+        registrationBuffer.close();
+        winBatchWriter.close();
+        databaseExecutor.shutdown(shutdownTimeout);
+        awaitOpenConnections(shutdownTimeout);
         databaseConnector.closeConnection();
+        if (replicaConnector != null) {
+            replicaConnector.closeConnection();
+        }
         logQueryPerformance();
     }
 
-    public void registerPlayerAsync(UUID uuid, String name) {
-        CompletableFuture.supplyAsync(() -> {
-            AtomicBoolean success = new AtomicBoolean(false);
-            databaseConnector.connect(connection -> {
-                try (PreparedStatement stmt = connection.prepareStatement(INSERT_PLAYER)) {
-                    stmt.setString(1, uuid.toString());
-                    stmt.setString(2, name);
-                    stmt.setString(3, name);
-                    int rows = stmt.executeUpdate();
-                    logDebug("Player registration affected " + rows + " rows");
-                    success.set(true);
+    private void awaitOpenConnections(long timeoutMillis) {
+        Object lock = databaseConnector.getLock();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (lock) {
+            while (!databaseConnector.isFinished()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    logInfo("Closing pool with connections still in use");
+                    return;
                 }
-            });
-            return success.get();
-        });
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    public void registerPlayerAsync(UUID uuid, String name) {
+        registrationBuffer.register(uuid, name);
     }
 
     public CompletableFuture<Boolean> registerWinAsync(KothWinDTO win) {
-        return CompletableFuture.supplyAsync(() -> {
-            AtomicBoolean success = new AtomicBoolean(false);
+        // Queued before the cache sees it, so a load that misses it in the database adds it
+        long queuedSeq = unwrittenWins.add(win.getPlayerUuid(), win.getKothName());
+        kothDataCache.applyQueuedWin(win.getPlayerUuid(), win.getPlayerName(), win.getKothName(),
+                win.getWinTime().toLocalDate());
+        if (replicaConnector != null) {
+            // The replica may not have this win yet, so the player's own stats are read from the primary for a while.
+            long now = System.currentTimeMillis();
+            primaryReadsUntil.values().removeIf(until -> until < now);
+            primaryReadsUntil.put(win.getPlayerUuid(), now + stalenessGuardMillis);
+        }
+        if (winEventBus != null) {
+            winEventBus.publish(win);
+        }
+        return winBatchWriter.submit(win, queuedSeq);
+    }
 
-            databaseConnector.connect(connection -> {
-                try (PreparedStatement stmt = connection.prepareStatement(INSERT_WIN)) {
-                    stmt.setString(1, win.getPlayerUuid().toString());
-                    stmt.setString(2, win.getKothName());
-                    int rows = stmt.executeUpdate();
-                    logDebug("Win registration affected " + rows + " rows");
-                }
+    public CompletableFuture<Map<String, Integer>> getPlayerStats(UUID uuid) {
+        Map<String, Integer> cachedStats = kothDataCache.getPlayerStats(uuid);
+        if (cachedStats != null) {
+            logDebug("Player stats found in cache for " + uuid);
+            return CompletableFuture.completedFuture(cachedStats);
+        }
+        if (!databaseConnector.isAvailable() && (replicaConnector == null || !replicaConnector.isAvailable())) {
+            // Degraded mode: only what is already cached can be served.
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }
 
-                try (PreparedStatement stmt = connection.prepareStatement(UPDATE_STATS)) {
-                    stmt.setString(1, win.getPlayerUuid().toString());
-                    stmt.setString(2, win.getKothName());
-                    int rows = stmt.executeUpdate();
-                    logDebug("Stats update affected " + rows + " rows");
+        return statsLoader.load(uuid);
+    }
+
+    /**
+     * Reads the wins per KotH of several players straight from the database, one IN (...) query per chunk.
+     * Used by the stats cache loader.
+     *
+     * @return stats for every requested player (empty for players without wins), or null if a query failed
+     */
+    public Map<UUID, Map<String, Integer>> queryPlayerStats(Collection<UUID> uuids) {
+        List<UUID> players = new ArrayList<>(uuids);
+        WinEventBus bus = winEventBus;
+        long eventPosition = bus != null ? bus.position() : 0;
+
+        Map<UUID, Map<String, Integer>> stats = queryRead("player_stats", requiresPrimary(players), bus != null, connection -> {
+            Map<UUID, Map<String, Integer>> result = new HashMap<>();
+            for (UUID uuid : players) {
+                result.put(uuid, new HashMap<>());
+            }
+            for (int from = 0; from < players.size(); from += statsQueryChunkSize) {
+                List<UUID> chunk = players.subList(from, Math.min(players.size(), from + statsQueryChunkSize));
+                try (PreparedStatement stmt = connection.prepareStatement(buildPlayerStatsQuery(chunk.size()))) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        UuidCodec.setUuid(stmt, i + 1, chunk.get(i));
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            result.get(UuidCodec.getUuid(rs, "player_uuid"))
+                                    .put(arenaRegistry.getName(connection, rs.getInt("arena_id")), rs.getInt("wins"));
+                        }
+                    }
                 }
+                loadPlayerWindows(connection, chunk);
+            }
+            if (bus != null) {
+                kothDataCache.markSnapshots(players, bus.markSnapshot(connection, eventPosition));
+            }
+            return result;
+        });
 
-                success.set(true);
-            }, true);
+        if (stats == null) {
+            return null;
+        }
+        databaseConnector.getQueryMetrics().recordRows("player_stats", players.size());
+        logDebug("Loaded stats of " + players.size() + " players");
+        return stats;
+    }
 
-            return success.get();
-        }).thenApply(success -> {
-            if (success) {
-                kothDataCache.incrementKothWin(win.getPlayerUuid(), win.getKothName());
+    private static String buildPlayerStatsQuery(int players) {
+        return buildInQuery(GET_PLAYER_STATS_PREFIX, players);
+    }
+
+    private static String buildInQuery(String prefix, int players) {
+        StringBuilder sql = new StringBuilder(prefix.length() + players * 3);
+        sql.append(prefix);
+        for (int i = 0; i < players; i++) {
+            sql.append(i > 0 ? ", ?" : "?");
+        }
+        return sql.append(')').toString();
+    }
+
+    /**
+     * Staleness guard: true if one of the players won recently, so the replica may still miss that win.
+     */
+    private boolean requiresPrimary(Collection<UUID> players) {
+        if (replicaConnector == null || primaryReadsUntil.isEmpty()) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        for (UUID uuid : players) {
+            Long until = primaryReadsUntil.get(uuid);
+            if (until != null && until >= now) {
+                guardedReads.increment();
+                return true;
             }
-            return success;
-        });
+        }
+        return false;
     }
 
-    public CompletableFuture<Map<String, Integer>> getPlayerStats(UUID uuid) {
+    /**
+     * Runs a read-only query on the replica when there is one and it is available, otherwise on the primary.
+     * If the replica fails the query is repeated on the primary, so results are built inside the query.
+     *
+     * @param primaryOnly true for reads that must see this server's latest writes
+     * @return the query result, or null if it failed on every connector tried
+     */
+    private <T> T queryRead(String operation, boolean primaryOnly, ReadQuery<T> query) {
+        return queryRead(operation, primaryOnly, false, query);
+    }
 
-        return CompletableFuture.supplyAsync(() -> {
-            Map<String, Integer> cachedStats = kothDataCache.getPlayerStats(uuid);
-            if (cachedStats != null) {
-                logDebug("Player stats found in cache for " + uuid);
-                return cachedStats;
+    /**
+     * @param consistent run the query in a transaction, so all its statements read the same snapshot
+     */
+    private <T> T queryRead(String operation, boolean primaryOnly, boolean consistent, ReadQuery<T> query) {
+        AtomicReference<T> result = new AtomicReference<>();
+        if (replicaConnector != null && !primaryOnly && replicaConnector.isAvailable()) {
+            replicaReads.increment();
+            replicaConnector.connect(operation, connection -> result.set(query.run(connection)), consistent);
+            if (result.get() != null) {
+                return result.get();
             }
+            replicaFallbacks.increment();
+            logDebug("Replica read failed for " + operation + ", retrying on the primary");
+        }
+        databaseConnector.connect(operation, connection -> result.set(query.run(connection)), consistent);
+        return result.get();
+    }
+
+    private interface ReadQuery<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Rebuilds the in-memory leaderboards from the database. Runs once when the tables are ready.
+     */
+    private CompletableFuture<Integer> loadLeaderboard() {
+        return readWhenTablesReady(0, () -> {
+            long startTime = System.currentTimeMillis();
+            long warmSince = warmupRecentMillis > 0 ? startTime - warmupRecentMillis : 0;
+            KothDataCache.StatsStream stream = streamStats(warmSince, true);
+            reconcileWindows();
+
+            long duration = Math.max(1, System.currentTimeMillis() - startTime);
+            logInfo("Warm-up completed: " + stream.getRows() + " stats rows, " + stream.getPlayers() + " players, " +
+                    stream.getWarmed() + " player stats cached in " + duration + "ms (" +
+                    stream.getRows() * 1000 / duration + " rows/s)");
+            return (int) stream.getPlayers();
+        });
+    }
 
-            Map<String, Integer> stats = new HashMap<>();
-            AtomicReference<Map<String, Integer>> resultStats = new AtomicReference<>(stats);
+    /**
+     * Merges the database totals into the leaderboards to pick up changes made outside this server.
+     */
+    public CompletableFuture<Integer> reconcileLeaderboard() {
+        return readWhenTablesReady(0, () -> {
+            KothDataCache.StatsStream stream = streamStats(0, false);
+            reconcileWindows();
+            logDebug("Leaderboard reconciled with " + stream.getPlayers() + " players");
+            return (int) stream.getPlayers();
+        });
+    }
 
-            databaseConnector.connect(connection -> {
-                try (PreparedStatement stmt = connection.prepareStatement(GET_PLAYER_STATS)) {
-                    stmt.setString(1, uuid.toString());
-                    ResultSet rs = stmt.executeQuery();
+    private <T> CompletableFuture<T> readWhenTablesReady(T fallback, Supplier<T> task) {
+        return tablesReady.thenCompose(ready -> ready
+                ? databaseExecutor.supplyRead(task)
+                : CompletableFuture.completedFuture(fallback));
+    }
 
-                    int kothCount = 0;
+    /**
+     * Streams koth_stats into the leaderboards with a forward-only result set fetched in chunks, so the heap
+     * holds one fetch and one player at a time however big the table is. Merging never lowers a count, which
+     * also makes a retry on the primary after a failed replica read safe.
+     * With cross-server sync the stream reads in one transaction, marked before the first row.
+     */
+    private KothDataCache.StatsStream streamStats(long warmSince, boolean reportProgress) {
+        WinEventBus bus = winEventBus;
+        long eventPosition = bus != null ? bus.position() : 0;
+        KothDataCache.StatsStream stream = queryRead("leaderboard", false, bus != null, connection -> {
+            KothDataCache.StatsStream result = kothDataCache.openStatsStream(warmSince,
+                    bus != null ? bus.markSnapshot(connection, eventPosition) : null);
+            long startTime = System.currentTimeMillis();
+            long lastReport = startTime;
+
+            try (PreparedStatement stmt = connection.prepareStatement(STREAM_STATS_QUERY,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(warmupFetchSize);
+                try (ResultSet rs = stmt.executeQuery()) {
                     while (rs.next()) {
-                        String kothName = rs.getString("koth_name");
-                        int wins = rs.getInt("wins");
-                        stats.put(kothName, wins);
-                        kothCount++;
+                        Timestamp lastSeen = rs.getTimestamp("last_seen");
+                        result.accept(UuidCodec.getUuid(rs, "uuid"), rs.getString("name"),
+                                lastSeen != null ? lastSeen.getTime() : 0L,
+                                arenaRegistry.getName(connection, rs.getInt("arena_id")), rs.getInt("wins"));
+
+                        if (reportProgress && (result.getRows() & 0x3FFF) == 0) {
+                            long now = System.currentTimeMillis();
+                            if (now - lastReport >= WARMUP_PROGRESS_INTERVAL_MILLIS) {
+                                lastReport = now;
+                                logInfo("Warm-up: " + result.getRows() + " stats rows, " + result.getPlayers() +
+                                        " players, " + result.getRows() * 1000 / Math.max(1, now - startTime) + " rows/s");
+                            }
+                        }
                     }
-
-                    kothDataCache.setPlayerStats(uuid, stats);
-                    resultStats.set(stats);
                 }
-            });
-
-            return resultStats.get();
+            } finally {
+                result.finish();
+            }
+            return result;
         });
+        if (stream == null) {
+            plugin.getLogger().warning("No se pudo cargar el ranking desde la base de datos");
+            stream = kothDataCache.openStatsStream(0, null);
+        }
+        databaseConnector.getQueryMetrics().recordRows("leaderboard", stream.getRows());
+        return stream;
     }
 
-    public CompletableFuture<List<SortedPlayer>> getTopPlayers(int limit) {
-        return CompletableFuture.supplyAsync(() -> {
+    /**
+     * Loads the daily, weekly, monthly and season totals from the pre-aggregated daily buckets: the top of each
+     * window, plus the buckets of every player whose stats are cached. Players loaded later get theirs with
+     * their stats, see {@link #loadPlayerWindows}.
+     * Must run after {@link #streamStats}: a season without start date is taken from the freshly merged totals.
+     */
+    private void reconcileWindows() {
+        WindowedLeaderboards windows = kothDataCache.getWindowedLeaderboards();
+        windows.rollover(LocalDate.now());
+        int limit = kothDataCache.getTopPlayersSize();
+
+        for (TimeWindow window : TimeWindow.values()) {
+            LocalDate start = windows.getStart(window);
+            if (window == TimeWindow.SEASON && windows.isSeasonUnbounded()) {
+                // Summing every daily bucket ever recorded would only rebuild the koth_stats totals.
+                windows.reconcile(window, start, kothDataCache.getLeaderboard().top(limit));
+                continue;
+            }
 
-            if (!kothDataCache.needsTopPlayersRefresh()) {
-                List<SortedPlayer> cachedResults = kothDataCache.getTopPlayers();
-                if (!cachedResults.isEmpty()) {
-                    return cachedResults;
+            List<SortedPlayer> players = queryRead("window_" + window.getKey(), false, connection -> {
+                List<SortedPlayer> result = new ArrayList<>();
+                try (PreparedStatement stmt = connection.prepareStatement(GET_WINDOW_LEADERBOARD_QUERY)) {
+                    stmt.setObject(1, start);
+                    stmt.setInt(2, limit);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            result.add(new SortedPlayer(UuidCodec.getUuid(rs, "uuid"),
+                                    rs.getString("name"), rs.getInt("total_wins")));
+                        }
+                    }
                 }
+                return result;
+            });
+            if (players == null) {
+                players = new ArrayList<>();
             }
+            databaseConnector.getQueryMetrics().recordRows("window_" + window.getKey(), players.size());
 
-            List<SortedPlayer> results = new ArrayList<>();
-            AtomicReference<List<SortedPlayer>> resultList = new AtomicReference<>(results);
-
-            databaseConnector.connect(connection -> {
-                try (PreparedStatement stmt = connection.prepareStatement(GET_TOP_PLAYERS_QUERY)) {
-                    stmt.setInt(1, limit);
-                    ResultSet rs = stmt.executeQuery();
+            windows.reconcile(window, start, players);
+        }
 
-                    while (rs.next()) {
-                        String name = rs.getString("name");
-                        String uuidStr = rs.getString("uuid");
-                        int totalWins = rs.getInt("total_wins");
+        List<UUID> cached = kothDataCache.getCachedPlayers();
+        for (int from = 0; from < cached.size(); from += statsQueryChunkSize) {
+            List<UUID> chunk = cached.subList(from, Math.min(cached.size(), from + statsQueryChunkSize));
+            queryRead("player_windows", false, connection -> {
+                loadPlayerWindows(connection, chunk);
+                return Boolean.TRUE;
+            });
+        }
+    }
 
-                        SortedPlayer player = new SortedPlayer(
-                                UUID.fromString(uuidStr),
-                                name,
-                                totalWins
-                        );
+    /**
+     * Merges the window totals of the given players from their daily buckets. The boards only hold the top
+     * of each window plus what was won since the last restart, so without this the window placeholders of
+     * everyone else would count too few. A season without start date is every win, so it is taken from the
+     * main leaderboard.
+     */
+    private void loadPlayerWindows(Connection connection, List<UUID> players) throws SQLException {
+        WindowedLeaderboards windows = kothDataCache.getWindowedLeaderboards();
+        boolean unboundedSeason = windows.isSeasonUnbounded();
+        Map<TimeWindow, LocalDate> starts = new EnumMap<>(TimeWindow.class);
+        LocalDate from = null;
+        for (TimeWindow window : TimeWindow.values()) {
+            if (window == TimeWindow.SEASON && unboundedSeason) {
+                continue;
+            }
+            LocalDate start = windows.getStart(window);
+            starts.put(window, start);
+            if (from == null || start.isBefore(from)) {
+                from = start;
+            }
+        }
 
-                        results.add(player);
+        Map<UUID, String> names = new HashMap<>();
+        Map<TimeWindow, Map<UUID, Integer>> totals = new EnumMap<>(TimeWindow.class);
+        try (PreparedStatement stmt = connection.prepareStatement(buildInQuery(GET_PLAYER_WINDOWS_PREFIX, players.size()))) {
+            stmt.setObject(1, from);
+            for (int i = 0; i < players.size(); i++) {
+                UuidCodec.setUuid(stmt, i + 2, players.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    UUID uuid = UuidCodec.getUuid(rs, "player_uuid");
+                    LocalDate day = rs.getDate("day").toLocalDate();
+                    int wins = rs.getInt("wins");
+                    names.put(uuid, rs.getString("name"));
+                    for (Map.Entry<TimeWindow, LocalDate> start : starts.entrySet()) {
+                        if (!day.isBefore(start.getValue())) {
+                            totals.computeIfAbsent(start.getKey(), window -> new HashMap<>()).merge(uuid, wins, Integer::sum);
+                        }
                     }
+                }
+            }
+        }
 
-                    kothDataCache.updateTopPlayers(results);
-                    resultList.set(results);
+        for (Map.Entry<TimeWindow, LocalDate> start : starts.entrySet()) {
+            List<SortedPlayer> rows = new ArrayList<>();
+            for (Map.Entry<UUID, Integer> total : totals.getOrDefault(start.getKey(), Collections.emptyMap()).entrySet()) {
+                rows.add(new SortedPlayer(total.getKey(), names.get(total.getKey()), total.getValue()));
+            }
+            windows.reconcile(start.getKey(), start.getValue(), rows);
+        }
+        if (unboundedSeason) {
+            List<SortedPlayer> rows = new ArrayList<>();
+            for (UUID uuid : players) {
+                SortedPlayer player = kothDataCache.getLeaderboard().get(uuid);
+                if (player != null) {
+                    rows.add(player);
                 }
-            });
+            }
+            windows.reconcile(TimeWindow.SEASON, windows.getStart(TimeWindow.SEASON), rows);
+        }
+    }
 
-            return resultList.get();
+
+    /**
+     * Copies all stats from the current backend into the given one, configured in config.yml.
+     * This server keeps using the current backend until database.type is changed and it restarts.
+     *
+     * @return the number of rows copied, or -1 if the transfer failed; fails with an IllegalStateException
+     * if the target cannot be reached
+     */
+    public CompletableFuture<Long> transferTo(StorageType targetType) {
+        return readWhenTablesReady(-1L, () -> {
+            // Pending wins and registrations must be in the source before it is copied
+            winBatchWriter.flush();
+            registrationBuffer.flush();
+
+            DatabaseConnector target = createConnector(plugin, targetType);
+            try {
+                int pageSize = plugin.getConfig().getInt("database.migration.chunk-size", 5000);
+                long startTime = System.currentTimeMillis();
+                long rows = new BackendTransfer(databaseConnector, target, targetType, pageSize, plugin.getLogger()).run();
+                logInfo("Transfer to " + targetType + " finished with " + rows + " rows in " +
+                        (System.currentTimeMillis() - startTime) + "ms");
+                return rows;
+            } finally {
+                target.closeConnection();
+            }
         });
     }
 
+    public StorageType getStorageType() {
+        return storageType;
+    }
+
+    /**
+     * Starts a new season today: the season counters restart from zero and the date is saved to the config.
+     */
+    public void startNewSeason() {
+        LocalDate today = LocalDate.now();
+        plugin.getConfig().set("stats.season-start", today.toString());
+        plugin.saveConfig();
+        kothDataCache.getWindowedLeaderboards().startSeason(today);
+        logInfo("New season started on " + today);
+    }
+
     private void logQueryPerformance() {
-        synchronized (queryTotalTime) {
-            if (queryCount.isEmpty()) {
-                return;
-            }
+        logInfo("=== DATABASE PERFORMANCE STATISTICS ===");
+        logInfo("Current time: " + getCurrentTime());
+        databaseExecutor.logStatistics();
+        winBatchWriter.logStatistics();
+        registrationBuffer.logStatistics();
+        statsLoader.logStatistics();
+        for (String line : getQueryReport()) {
+            logInfo(line);
+        }
+        logInfo("=======================================");
+    }
 
-            logInfo("=== DATABASE PERFORMANCE STATISTICS ===");
-            logInfo("Current time: " + getCurrentTime());
-            logInfo("Total queries executed: " + queryCount.values().stream().mapToInt(Integer::intValue).sum());
+    /**
+     * @return the pool usage, the circuit breaker state and one line per database operation with latency percentiles, pool wait and row counts
+     */
+    public List<String> getQueryReport() {
+        List<String> lines = new ArrayList<>();
+        String pool = databaseConnector.describePool();
+        if (pool != null) {
+            lines.add("Pool: " + pool);
+        }
+        CircuitBreaker circuitBreaker = databaseConnector.getCircuitBreaker();
+        if (circuitBreaker != null) {
+            lines.add("Circuit breaker: " + circuitBreaker.describe());
+        }
 
-            queryTotalTime.entrySet().stream()
-                    .sorted((e1, e2) -> {
-                        double avg1 = e1.getValue() / (double) queryCount.get(e1.getKey());
-                        double avg2 = e2.getValue() / (double) queryCount.get(e2.getKey());
-                        return Double.compare(avg2, avg1);
-                    })
-                    .forEach(entry -> {
-                        String operation = entry.getKey();
-                        long totalTime = entry.getValue();
-                        int count = queryCount.get(operation);
-                        double avgTime = totalTime / (double) count;
+        QueryMetrics metrics = databaseConnector.getQueryMetrics();
+        if (metrics.isEmpty()) {
+            lines.add("No queries recorded yet");
+        } else {
+            lines.addAll(metrics.describe());
+        }
 
-                        logInfo(String.format("Operation: %-25s | Count: %-5d | Avg time: %.2fms | Total: %dms",
-                                operation, count, avgTime, totalTime));
-                    });
+        if (winEventBus != null) {
+            lines.add("Sync: " + winEventBus.describe());
+        }
 
-            logInfo("=======================================");
+        if (replicaConnector != null) {
+            lines.add("Replica: reads=" + replicaReads.sum() + ", fallbacks to primary=" + replicaFallbacks.sum() +
+                    ", staleness guard reads=" + guardedReads.sum());
+            String replicaPool = replicaConnector.describePool();
+            if (replicaPool != null) {
+                lines.add("Replica pool: " + replicaPool);
+            }
+            CircuitBreaker replicaBreaker = replicaConnector.getCircuitBreaker();
+            if (replicaBreaker != null) {
+                lines.add("Replica circuit breaker: " + replicaBreaker.describe());
+            }
+            for (String line : replicaConnector.getQueryMetrics().describe()) {
+                lines.add("Replica " + line);
+            }
         }
+        return lines;
+    }
+
+    public DatabaseExecutor getDatabaseExecutor() {
+        return databaseExecutor;
+    }
+
+    public DatabaseConnector getDatabaseConnector() {
+        return databaseConnector;
     }
 
 
@@ -296,6 +907,14 @@ public class DatabaseManager {
         return timeFormat.format(new Date());
     }
 
+    public ArenaRegistry getArenaRegistry() {
+        return arenaRegistry;
+    }
+
+    public UnwrittenWins getUnwrittenWins() {
+        return unwrittenWins;
+    }
+
     public KothDataCache getKothDataCache() {
         return kothDataCache;
     }
@@ -0,0 +1,18 @@
+package com.stephanofer.zKothData.database;
+
+import com.stephanofer.zKothData.ZKothData;
+
+import java.io.File;
+
+/**
+ * Local H2 database file in the plugin folder, for servers that do not want a MySQL round trip per win.
+ * Runs in MySQL mode so the same SQL works on both backends.
+ */
+public class H2Connector extends MySQLConnector {
+
+    public H2Connector(ZKothData plugin, String fileName, int poolSize, int connectionTimeout) {
+        super(plugin, "jdbc:h2:file:" + new File(plugin.getDataFolder(), fileName).getAbsolutePath() +
+                        ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=DAY",
+                "sa", "", poolSize, connectionTimeout);
+    }
+}
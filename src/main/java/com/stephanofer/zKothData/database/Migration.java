@@ -0,0 +1,17 @@
+package com.stephanofer.zKothData.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A schema change applied once when the schema version recorded in the database is lower than {@link #getVersion()}.
+ * Several servers may share the database, so a migration must detect work that is already done and skip it.
+ */
+public interface Migration {
+
+    int getVersion();
+
+    String getDescription();
+
+    void migrate(Connection connection) throws SQLException;
+}
@@ -0,0 +1,143 @@
+package com.stephanofer.zKothData.database;
+
+import com.stephanofer.zKothData.ZKothData;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Applies pending {@link Migration}s in version order.
+ * The schema version lives in the database (koth_schema), since every server of a network shares the schema,
+ * and the whole run holds a database lock so only one server migrates at a time. A server that waited for
+ * the lock reads the version again and skips what the other one already applied.
+ * <p>
+ * The copies are not safe against writes from servers still running an older version of the plugin:
+ * stop the other servers before updating one that has to migrate.
+ */
+public class MigrationRunner {
+
+    /** Version of a schema that never recorded one. Every migration checks the real columns, so rerunning them is safe. */
+    private static final int BASELINE_VERSION = 1;
+    private static final String LOCK_NAME = "zkothdata_migration";
+
+    private static final String CREATE_SCHEMA_TABLE =
+            "CREATE TABLE IF NOT EXISTS koth_schema (" +
+                    "name VARCHAR(32) PRIMARY KEY, " +
+                    "version INT NOT NULL" +
+                    ")";
+
+    private static final String SELECT_VERSION = "SELECT version FROM koth_schema WHERE name = 'zkothdata'";
+
+    private static final String UPSERT_VERSION =
+            "INSERT INTO koth_schema (name, version) VALUES ('zkothdata', ?) " +
+                    "ON DUPLICATE KEY UPDATE version = VALUES(version)";
+
+    private final ZKothData plugin;
+    private final DatabaseConnector databaseConnector;
+    private final List<Migration> migrations = new ArrayList<>();
+    private final int lockTimeoutSeconds;
+
+    public MigrationRunner(ZKothData plugin, DatabaseConnector databaseConnector) {
+        this.plugin = plugin;
+        this.databaseConnector = databaseConnector;
+        this.lockTimeoutSeconds = plugin.getConfig().getInt("database.migration.lock-timeout", 600);
+    }
+
+    public MigrationRunner register(Migration migration) {
+        migrations.add(migration);
+        return this;
+    }
+
+    /**
+     * @return false if a migration failed or the lock could not be taken; later migrations are not attempted
+     */
+    public boolean run() {
+        migrations.sort(Comparator.comparingInt(Migration::getVersion));
+        AtomicBoolean success = new AtomicBoolean(false);
+
+        databaseConnector.connect("migration", connection -> {
+            if (!acquireLock(connection)) {
+                plugin.getLogger().severe("Otro servidor está migrando la base de datos desde hace más de " +
+                        lockTimeoutSeconds + "s, se reintentará en el próximo inicio");
+                return;
+            }
+            try {
+                success.set(migrate(connection));
+            } finally {
+                try (PreparedStatement stmt = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+                    stmt.setString(1, LOCK_NAME);
+                    stmt.executeQuery().close();
+                }
+            }
+        }, false);
+        return success.get();
+    }
+
+    private boolean acquireLock(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.setInt(2, lockTimeoutSeconds);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private boolean migrate(Connection connection) throws SQLException {
+        int current = readVersion(connection);
+
+        for (Migration migration : migrations) {
+            if (migration.getVersion() <= current) {
+                continue;
+            }
+
+            plugin.getLogger().warning("Aplicando migración " + migration.getVersion() + ": " + migration.getDescription() +
+                    ". Los demás servidores que usan esta base de datos deben estar detenidos");
+            long startTime = System.currentTimeMillis();
+            try {
+                migration.migrate(connection);
+            } catch (SQLException ex) {
+                plugin.getLogger().severe("La migración " + migration.getVersion() + " falló, se reintentará en el próximo inicio: " +
+                        ex.getMessage());
+                return false;
+            }
+
+            current = migration.getVersion();
+            writeVersion(connection, current);
+            plugin.getLogger().info("Migración " + current + " completada en " +
+                    (System.currentTimeMillis() - startTime) + "ms");
+        }
+        return true;
+    }
+
+    /**
+     * @return the version recorded in the database. A database without one starts from the baseline, never from
+     * this server's config: a newer config pointed at an older database would skip migrations it still needs.
+     */
+    private int readVersion(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(CREATE_SCHEMA_TABLE)) {
+            stmt.executeUpdate();
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(SELECT_VERSION);
+             ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
+        }
+        writeVersion(connection, BASELINE_VERSION);
+        return BASELINE_VERSION;
+    }
+
+    private void writeVersion(Connection connection, int version) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(UPSERT_VERSION)) {
+            stmt.setInt(1, version);
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.stephanofer.zKothData.database;
 import com.stephanofer.zKothData.ZKothData;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -11,37 +13,63 @@ import java.util.logging.Level;
 
 
 public class MySQLConnector implements DatabaseConnector {
+    private static final String DEFAULT_OPERATION = "query";
+
     private final ZKothData plugin;
     private HikariDataSource hikari;
     private final AtomicInteger openConnections;
     private final Object lock;
+    private final int poolSize;
+    private final QueryMetrics queryMetrics = new QueryMetrics();
+    private CircuitBreaker circuitBreaker;
+    private BukkitTask probeTask;
 
     public MySQLConnector(ZKothData plugin, String hostname, int port, String database,
                           String username, String password, boolean useSSL, int poolSize, int connectionTimeout) {
+        this(plugin, "jdbc:mysql://" + hostname + ":" + port + "/" + database +
+                "?useSSL=" + useSSL + "&allowPublicKeyRetrieval=true&serverTimezone=UTC&useUnicode=true&characterEncoding=UTF-8",
+                username, password, poolSize, connectionTimeout);
+    }
+
+    /**
+     * Connects to any MySQL-compatible JDBC URL, such as MariaDB or an embedded MariaDB4j instance.
+     *
+     * @throws IllegalStateException if the pool cannot connect; the caller decides what that means for the plugin
+     */
+    public MySQLConnector(ZKothData plugin, String jdbcUrl, String username, String password,
+                          int poolSize, int connectionTimeout) {
         this.plugin = plugin;
         this.openConnections = new AtomicInteger();
         this.lock = new Object();
+        this.poolSize = poolSize;
 
         HikariConfig config = new HikariConfig();
-        config.setJdbcUrl("jdbc:mysql://" + hostname + ":" + port + "/" + database +
-                "?useSSL=" + useSSL + "&allowPublicKeyRetrieval=true&serverTimezone=UTC&useUnicode=true&characterEncoding=UTF-8");
+        config.setJdbcUrl(jdbcUrl);
         config.setUsername(username);
         config.setPassword(password);
         config.setMaximumPoolSize(poolSize);
-        config.setDriverClassName("com.mysql.cj.jdbc.Driver");
+        String driverClass = driverFor(jdbcUrl);
+        if (driverClass != null) {
+            config.setDriverClassName(driverClass);
+        }
         config.setConnectionTimeout(connectionTimeout);
 
 
-        config.addDataSourceProperty("cachePrepStmts", "true");
-        config.addDataSourceProperty("prepStmtCacheSize", "250");
-        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
-        config.addDataSourceProperty("useServerPrepStmts", "true");
-        config.addDataSourceProperty("useLocalSessionState", "true");
-        config.addDataSourceProperty("rewriteBatchedStatements", "true");
-        config.addDataSourceProperty("cacheResultSetMetadata", "true");
-        config.addDataSourceProperty("cacheServerConfiguration", "true");
-        config.addDataSourceProperty("elideSetAutoCommits", "true");
-        config.addDataSourceProperty("maintainTimeStats", "false");
+        // Connector/J tuning, other drivers reject properties they do not know
+        if (jdbcUrl.startsWith("jdbc:mysql:")) {
+            config.addDataSourceProperty("cachePrepStmts", "true");
+            config.addDataSourceProperty("prepStmtCacheSize", "250");
+            config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+            config.addDataSourceProperty("useServerPrepStmts", "true");
+            config.addDataSourceProperty("useLocalSessionState", "true");
+            config.addDataSourceProperty("rewriteBatchedStatements", "true");
+            config.addDataSourceProperty("cacheResultSetMetadata", "true");
+            config.addDataSourceProperty("cacheServerConfiguration", "true");
+            config.addDataSourceProperty("elideSetAutoCommits", "true");
+            config.addDataSourceProperty("maintainTimeStats", "false");
+            // Statements with a fetch size read through a server cursor, the startup warm-up streams koth_stats that way.
+            config.addDataSourceProperty("useCursorFetch", "true");
+        }
 
         try {
             Class.forName("com.mysql.cj.jdbc.Driver");
@@ -51,13 +79,51 @@ public class MySQLConnector implements DatabaseConnector {
             this.hikari = new HikariDataSource(config);
             plugin.getLogger().info("Conexión a base de datos establecida correctamente");
         } catch (Exception ex) {
-            plugin.getLogger().log(Level.SEVERE, "Error al conectar con MySQL. ¿Están correctas las credenciales?", ex);
-            plugin.getServer().getPluginManager().disablePlugin(plugin);
+            plugin.getLogger().log(Level.SEVERE, "Error al conectar con la base de datos. ¿Están correctas las credenciales?", ex);
+            throw new IllegalStateException("Could not connect to the database: " + ex.getMessage(), ex);
+        }
+    }
+
+    private static String driverFor(String jdbcUrl) {
+        if (jdbcUrl.startsWith("jdbc:mysql:")) {
+            return "com.mysql.cj.jdbc.Driver";
+        }
+        if (jdbcUrl.startsWith("jdbc:h2:")) {
+            return "org.h2.Driver";
+        }
+        return null;
+    }
+
+    /**
+     * Fails calls fast while the database is down instead of making every caller wait for the pool timeout.
+     * A background task probes the database every probeIntervalTicks once the breaker has been open long enough.
+     */
+    public void useCircuitBreaker(CircuitBreaker circuitBreaker, long probeIntervalTicks) {
+        this.circuitBreaker = circuitBreaker;
+        this.probeTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin,
+                this::probe, probeIntervalTicks, probeIntervalTicks);
+    }
+
+    private void probe() {
+        if (this.hikari == null || !this.circuitBreaker.tryStartProbe()) {
+            return;
+        }
+        boolean alive;
+        try (Connection connection = this.hikari.getConnection()) {
+            alive = connection.isValid(2);
+        } catch (SQLException ex) {
+            alive = false;
+        }
+        if (this.circuitBreaker.onProbe(alive)) {
+            plugin.getLogger().info("Base de datos disponible de nuevo, se reanudan las consultas y escrituras pendientes");
         }
     }
 
     @Override
     public void closeConnection() {
+        if (this.probeTask != null) {
+            this.probeTask.cancel();
+        }
         if (this.hikari != null && !this.hikari.isClosed()) {
             this.hikari.close();
         }
@@ -65,25 +131,28 @@ public class MySQLConnector implements DatabaseConnector {
 
     @Override
     public void connect(ConnectionCallback callback) {
-        this.openConnections.incrementAndGet();
-        try (Connection connection = this.hikari.getConnection()) {
-            callback.accept(connection);
-        } catch (SQLException ex) {
-            this.plugin.getLogger().log(Level.SEVERE, "Error al ejecutar consulta MySQL: " + ex.getMessage(), ex);
-        } finally {
-            int open = this.openConnections.decrementAndGet();
-            synchronized (this.lock) {
-                if (open == 0)
-                    this.lock.notify();
-            }
-        }
+        connect(DEFAULT_OPERATION, callback, false);
     }
 
     @Override
     public void connect(ConnectionCallback callback, boolean useTransaction) {
+        connect(DEFAULT_OPERATION, callback, useTransaction);
+    }
+
+    @Override
+    public void connect(String operation, ConnectionCallback callback, boolean useTransaction) {
+        if (this.circuitBreaker != null && !this.circuitBreaker.allowRequest()) {
+            return;
+        }
         this.openConnections.incrementAndGet();
+        long requested = System.nanoTime();
+        long acquired = 0;
+        boolean borrowed = false;
+        boolean success = false;
 
         try (Connection connection = this.hikari.getConnection()) {
+            acquired = System.nanoTime();
+            borrowed = true;
             boolean originalAutoCommit = connection.getAutoCommit();
             if (useTransaction) {
                 connection.setAutoCommit(false);
@@ -95,6 +164,7 @@ public class MySQLConnector implements DatabaseConnector {
                 if (useTransaction) {
                     connection.commit();
                 }
+                success = true;
             } catch (SQLException ex) {
                 if (useTransaction) {
                     try {
@@ -110,8 +180,21 @@ public class MySQLConnector implements DatabaseConnector {
                 }
             }
         } catch (SQLException ex) {
-            this.plugin.getLogger().log(Level.SEVERE, "Error al ejecutar consulta MySQL: " + ex.getMessage(), ex);
+            this.plugin.getLogger().log(Level.SEVERE, "Error al ejecutar consulta MySQL (" + operation + "): " + ex.getMessage(), ex);
         } finally {
+            long finished = System.nanoTime();
+            if (!borrowed) {
+                // The pool never handed out a connection, the whole time was spent waiting for one.
+                acquired = finished;
+            }
+            this.queryMetrics.record(operation, acquired - requested, finished - acquired, success);
+            // Only the pool wait counts as latency: a stalled database leaves callers waiting for a connection,
+            // while bulk operations (warm-up, reconcile, migrations, transfers) legitimately run for a long time.
+            if (this.circuitBreaker != null && this.circuitBreaker.onResult(success, acquired - requested)) {
+                plugin.getLogger().warning("Base de datos no disponible, modo degradado: las lecturas usan la caché " +
+                        "y las escrituras quedan en cola hasta que vuelva");
+            }
+
             int open = this.openConnections.decrementAndGet();
             synchronized (this.lock) {
                 if (open == 0)
@@ -125,6 +208,43 @@ public class MySQLConnector implements DatabaseConnector {
         return this.hikari.getConnection();
     }
 
+    @Override
+    public int getPoolSize() {
+        return this.poolSize;
+    }
+
+    @Override
+    public String describePool() {
+        if (this.hikari == null || this.hikari.getHikariPoolMXBean() == null) {
+            return null;
+        }
+        HikariPoolMXBean pool = this.hikari.getHikariPoolMXBean();
+        return "active=" + pool.getActiveConnections() + "/" + this.poolSize + ", idle=" + pool.getIdleConnections() +
+                ", waiting=" + pool.getThreadsAwaitingConnection();
+    }
+
+    /**
+     * @return Hikari's live pool counters, or null if the pool is not available
+     */
+    public HikariPoolMXBean getPoolMXBean() {
+        return this.hikari != null ? this.hikari.getHikariPoolMXBean() : null;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return this.circuitBreaker == null || this.circuitBreaker.isClosed();
+    }
+
+    @Override
+    public CircuitBreaker getCircuitBreaker() {
+        return this.circuitBreaker;
+    }
+
+    @Override
+    public QueryMetrics getQueryMetrics() {
+        return this.queryMetrics;
+    }
+
     @Override
     public Object getLock() {
         return this.lock;
@@ -0,0 +1,175 @@
+package com.stephanofer.zKothData.database;
+
+import com.stephanofer.zKothData.ZKothData;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.sql.PreparedStatement;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces player registrations by UUID and writes them as one multi-row upsert per interval.
+ * A player that logs in, joins and relogs within the same interval costs a single row, with the latest name.
+ */
+public class PlayerRegistrationBuffer {
+
+    private static final int MAX_ROWS_PER_STATEMENT = 500;
+
+    private static final String UPSERT_PREFIX = "INSERT INTO koth_players (uuid, name) VALUES ";
+    private static final String UPSERT_SUFFIX = " ON DUPLICATE KEY UPDATE name = VALUES(name), last_seen = CURRENT_TIMESTAMP";
+
+    private final ZKothData plugin;
+    private final DatabaseConnector databaseConnector;
+    private final DatabaseExecutor databaseExecutor;
+    private final CompletableFuture<Boolean> tablesReady;
+
+    private final Map<UUID, String> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+    private final Object flushLock = new Object();
+    private final String fullChunkSql;
+    private final BukkitTask flushTask;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    public PlayerRegistrationBuffer(ZKothData plugin, DatabaseConnector databaseConnector,
+                                    DatabaseExecutor databaseExecutor, CompletableFuture<Boolean> tablesReady,
+                                    long flushIntervalTicks) {
+        this.plugin = plugin;
+        this.databaseConnector = databaseConnector;
+        this.databaseExecutor = databaseExecutor;
+        this.tablesReady = tablesReady;
+        this.fullChunkSql = buildUpsert(MAX_ROWS_PER_STATEMENT);
+
+        this.flushTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+            if (!pending.isEmpty()) {
+                scheduleFlush();
+            }
+        }, flushIntervalTicks, flushIntervalTicks);
+    }
+
+    public void register(UUID uuid, String name) {
+        requests.increment();
+        pending.put(uuid, name);
+    }
+
+    private void scheduleFlush() {
+        // Nothing is written until the schema is created and migrated, nor while the database is down.
+        if (!tablesReady.getNow(false) || !databaseConnector.isAvailable() || !flushQueued.compareAndSet(false, true)) {
+            return;
+        }
+
+        databaseExecutor.runWrite(() -> {
+            flushQueued.set(false);
+            flush();
+        }).exceptionally(ex -> {
+            flushQueued.set(false);
+            return null;
+        });
+    }
+
+    public void flush() {
+        synchronized (flushLock) {
+            List<Map.Entry<UUID, String>> batch = new ArrayList<>(pending.size());
+            for (Map.Entry<UUID, String> entry : pending.entrySet()) {
+                UUID uuid = entry.getKey();
+                String name = entry.getValue();
+                // Only take the entry if it was not renamed meanwhile, otherwise the next flush picks it up.
+                if (pending.remove(uuid, name)) {
+                    batch.add(new AbstractMap.SimpleImmutableEntry<>(uuid, name));
+                }
+            }
+
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            boolean success = write(batch);
+            long elapsed = System.nanoTime() - start;
+
+            flushNanos.add(elapsed);
+            long max;
+            do {
+                max = maxFlushNanos.get();
+            } while (elapsed > max && !maxFlushNanos.compareAndSet(max, elapsed));
+
+            if (success) {
+                flushes.increment();
+                flushedRows.add(batch.size());
+            } else {
+                for (Map.Entry<UUID, String> entry : batch) {
+                    pending.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+                plugin.getLogger().warning("No se pudieron registrar " + batch.size() + " jugadores, se reintentará");
+            }
+        }
+    }
+
+    private boolean write(List<Map.Entry<UUID, String>> batch) {
+        AtomicBoolean success = new AtomicBoolean(false);
+        databaseConnector.connect("register_players", connection -> {
+            for (int from = 0; from < batch.size(); from += MAX_ROWS_PER_STATEMENT) {
+                int to = Math.min(batch.size(), from + MAX_ROWS_PER_STATEMENT);
+                int rows = to - from;
+                String sql = rows == MAX_ROWS_PER_STATEMENT ? fullChunkSql : buildUpsert(rows);
+
+                try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                    int index = 1;
+                    for (int i = from; i < to; i++) {
+                        Map.Entry<UUID, String> entry = batch.get(i);
+                        UuidCodec.setUuid(stmt, index++, entry.getKey());
+                        stmt.setString(index++, entry.getValue());
+                    }
+                    stmt.executeUpdate();
+                }
+            }
+            success.set(true);
+        }, true);
+        if (success.get()) {
+            databaseConnector.getQueryMetrics().recordRows("register_players", batch.size());
+        }
+        return success.get();
+    }
+
+    private static String buildUpsert(int rows) {
+        StringBuilder sql = new StringBuilder(UPSERT_PREFIX.length() + UPSERT_SUFFIX.length() + rows * 7);
+        sql.append(UPSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append("(?, ?)");
+        }
+        return sql.append(UPSERT_SUFFIX).toString();
+    }
+
+    public void close() {
+        flushTask.cancel();
+        flush();
+    }
+
+    public void logStatistics() {
+        long requested = requests.sum();
+        long rows = flushedRows.sum();
+        long count = flushes.sum();
+
+        plugin.getLogger().info(String.format(
+                "Player registrations: requests=%d, rows written=%d, coalescing ratio=%s, flushes=%d, " +
+                        "flush avg=%.2fms max=%.2fms, pending=%d",
+                requested, rows, rows > 0 ? String.format("%.2f", requested / (double) rows) : "N/A", count,
+                count > 0 ? flushNanos.sum() / (double) count / 1_000_000.0 : 0.0,
+                maxFlushNanos.get() / 1_000_000.0, pending.size()));
+    }
+}
@@ -0,0 +1,175 @@
+package com.stephanofer.zKothData.database;
+
+import com.stephanofer.zKothData.KothDataCache;
+import com.stephanofer.zKothData.ZKothData;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gathers player stats cache misses for a short window and loads them together,
+ * so a mass reconnect costs one IN (...) query per chunk of players instead of one per player.
+ * Concurrent requests for the same player share the same future until its query has finished, and a failed
+ * query fails the future rather than reporting no wins.
+ * Once closed, requests that are still gathering and any new ones fail with an {@link IllegalStateException}.
+ */
+public class PlayerStatsLoader {
+
+    private final ZKothData plugin;
+    private final DatabaseExecutor databaseExecutor;
+    private final KothDataCache kothDataCache;
+
+    private final Map<UUID, CompletableFuture<Map<String, Integer>>> pending = new ConcurrentHashMap<>();
+    /** Requests whose query is running. A request moves here before it leaves pending, so none is sent twice. */
+    private final Map<UUID, CompletableFuture<Map<String, Integer>>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+    private volatile boolean closed;
+
+    private final int maxBatchSize;
+    private final long batchWindowTicks;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder loadedPlayers = new LongAdder();
+
+    public PlayerStatsLoader(ZKothData plugin, DatabaseExecutor databaseExecutor, KothDataCache kothDataCache,
+                             int maxBatchSize, long batchWindowTicks) {
+        this.plugin = plugin;
+        this.databaseExecutor = databaseExecutor;
+        this.kothDataCache = kothDataCache;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.batchWindowTicks = Math.max(0, batchWindowTicks);
+    }
+
+    public CompletableFuture<Map<String, Integer>> load(UUID uuid) {
+        requests.increment();
+        if (closed) {
+            return closedFuture();
+        }
+        CompletableFuture<Map<String, Integer>> existing = pending.get(uuid);
+        if (existing == null) {
+            existing = inFlight.get(uuid);
+        }
+        if (existing != null) {
+            return existing;
+        }
+        CompletableFuture<Map<String, Integer>> future = new CompletableFuture<>();
+        existing = pending.putIfAbsent(uuid, future);
+        if (existing != null) {
+            return existing;
+        }
+        if (closed) {
+            // close() may have drained the map before this request was added
+            pending.remove(uuid, future);
+            future.completeExceptionally(closedException());
+            return future;
+        }
+
+        if (pending.size() >= maxBatchSize) {
+            dispatch();
+        } else if (flushQueued.compareAndSet(false, true)) {
+            plugin.getServer().getScheduler().runTaskLaterAsynchronously(plugin, () -> {
+                flushQueued.set(false);
+                dispatch();
+            }, batchWindowTicks);
+        }
+        return future;
+    }
+
+    private void dispatch() {
+        if (closed) {
+            return;
+        }
+        Map<UUID, CompletableFuture<Map<String, Integer>>> batch = drain();
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        databaseExecutor.supplyRead(() -> kothDataCache.loadPlayerStats(batch.keySet()))
+                .whenComplete((stats, ex) -> {
+                    for (Map.Entry<UUID, CompletableFuture<Map<String, Integer>>> entry : batch.entrySet()) {
+                        UUID uuid = entry.getKey();
+                        CompletableFuture<Map<String, Integer>> future = entry.getValue();
+                        inFlight.remove(uuid, future);
+                        Map<String, Integer> playerStats = ex == null ? stats.get(uuid) : null;
+                        if (playerStats != null) {
+                            future.complete(playerStats);
+                        } else {
+                            future.completeExceptionally(ex != null ? ex
+                                    : new IllegalStateException("No stats were loaded for " + uuid));
+                        }
+                    }
+                });
+    }
+
+    private Map<UUID, CompletableFuture<Map<String, Integer>>> drain() {
+        return drain(true);
+    }
+
+    /**
+     * @param dispatched true if the batch is about to be queried, its requests stay shared until it completes
+     */
+    private Map<UUID, CompletableFuture<Map<String, Integer>>> drain(boolean dispatched) {
+        Map<UUID, CompletableFuture<Map<String, Integer>>> batch = new HashMap<>();
+        List<UUID> keys = new ArrayList<>(pending.keySet());
+        for (UUID uuid : keys) {
+            CompletableFuture<Map<String, Integer>> future = pending.get(uuid);
+            if (future == null) {
+                continue;
+            }
+            if (dispatched) {
+                inFlight.put(uuid, future);
+            }
+            // A concurrent drain that took it put the same future in flight
+            if (pending.remove(uuid, future)) {
+                batch.put(uuid, future);
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.increment();
+            loadedPlayers.add(batch.size());
+        }
+        return batch;
+    }
+
+    /**
+     * Fails every request that has not been sent to the database yet. Batches already queued on the
+     * executor finish or fail with it.
+     */
+    public void close() {
+        closed = true;
+        Map<UUID, CompletableFuture<Map<String, Integer>>> batch = drain(false);
+        for (CompletableFuture<Map<String, Integer>> future : batch.values()) {
+            future.completeExceptionally(closedException());
+        }
+        if (!batch.isEmpty()) {
+            plugin.getLogger().info("Player stats loader closed with " + batch.size() + " pending requests");
+        }
+    }
+
+    private static CompletableFuture<Map<String, Integer>> closedFuture() {
+        CompletableFuture<Map<String, Integer>> future = new CompletableFuture<>();
+        future.completeExceptionally(closedException());
+        return future;
+    }
+
+    private static IllegalStateException closedException() {
+        return new IllegalStateException("Player stats loader is closed");
+    }
+
+    public void logStatistics() {
+        long count = batches.sum();
+        long players = loadedPlayers.sum();
+        plugin.getLogger().info(String.format(
+                "Player stats loads: requests=%d, batches=%d, players=%d, avg batch=%s, pending=%d, in flight=%d",
+                requests.sum(), count, players,
+                count > 0 ? String.format("%.1f", players / (double) count) : "N/A", pending.size(), inFlight.size()));
+    }
+}
@@ -0,0 +1,73 @@
+package com.stephanofer.zKothData.database;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-operation database timings, recorded by {@link MySQLConnector} around every callback.
+ * Pool wait (time to borrow a connection) and execution (callback plus commit) are kept apart,
+ * so a saturated pool can be told apart from slow queries.
+ */
+public class QueryMetrics {
+
+    private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+
+    public void record(String operation, long poolWaitNanos, long executionNanos, boolean success) {
+        OperationStats stats = get(operation);
+        stats.poolWait.record(poolWaitNanos / 1000);
+        stats.execution.record(executionNanos / 1000);
+        if (!success) {
+            stats.errors.increment();
+        }
+    }
+
+    /**
+     * Adds the rows read or written by an operation. Callers report them themselves, the connector cannot see them.
+     */
+    public void recordRows(String operation, long rows) {
+        get(operation).rows.add(rows);
+    }
+
+    private OperationStats get(String operation) {
+        return operations.computeIfAbsent(operation, name -> new OperationStats());
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    /**
+     * @return one line per operation, slowest p99 first
+     */
+    public List<String> describe() {
+        List<Map.Entry<String, OperationStats>> entries = new ArrayList<>(operations.entrySet());
+        entries.sort(Comparator.comparingLong(
+                (Map.Entry<String, OperationStats> entry) -> entry.getValue().execution.getPercentile(99)).reversed());
+
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, OperationStats> entry : entries) {
+            OperationStats stats = entry.getValue();
+            lines.add(String.format("%-18s | n=%-6d err=%-3d rows=%-7d | exec p50=%s p99=%s max=%s | wait p50=%s p99=%s max=%s",
+                    entry.getKey(), stats.execution.getCount(), stats.errors.sum(), stats.rows.sum(),
+                    formatMicros(stats.execution.getPercentile(50)), formatMicros(stats.execution.getPercentile(99)),
+                    formatMicros(stats.execution.getMax()), formatMicros(stats.poolWait.getPercentile(50)),
+                    formatMicros(stats.poolWait.getPercentile(99)), formatMicros(stats.poolWait.getMax())));
+        }
+        return lines;
+    }
+
+    private static String formatMicros(long micros) {
+        return String.format("%.1fms", micros / 1000.0);
+    }
+
+    private static final class OperationStats {
+        private final LatencyHistogram poolWait = new LatencyHistogram();
+        private final LatencyHistogram execution = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+    }
+}
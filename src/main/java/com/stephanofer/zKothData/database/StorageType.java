@@ -0,0 +1,47 @@
+package com.stephanofer.zKothData.database;
+
+import java.util.Locale;
+
+/**
+ * Storage backend selected with database.type.
+ * H2 runs in MySQL compatibility mode, so the upserts (ON DUPLICATE KEY UPDATE, INSERT IGNORE) are shared
+ * and only the schema needs adjusting.
+ */
+public enum StorageType {
+    MYSQL,
+    H2;
+
+    public static StorageType parse(String value, StorageType def) {
+        if (value == null) {
+            return def;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            return def;
+        }
+    }
+
+    /**
+     * Adapts a MySQL CREATE TABLE statement to this backend.
+     */
+    public String adaptDdl(String sql) {
+        // H2 has no unsigned integer types
+        return this == H2 ? sql.replace(" UNSIGNED", "") : sql;
+    }
+
+    /**
+     * @return the statement moving an auto-increment counter past explicitly inserted ids, or null if the backend does it itself
+     */
+    public String restartIdentity(String table, String column, long next) {
+        return this == H2 ? "ALTER TABLE " + table + " ALTER COLUMN " + column + " RESTART WITH " + next : null;
+    }
+
+    /**
+     * The schema migrations rebuild tables with RENAME TABLE and read information_schema the MySQL way.
+     * A local H2 file is always created with the current schema, so it never needs them.
+     */
+    public boolean supportsMigrations() {
+        return this == MYSQL;
+    }
+}
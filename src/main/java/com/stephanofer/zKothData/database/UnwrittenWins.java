@@ -0,0 +1,180 @@
+package com.stephanofer.zKothData.database;
+
+import com.stephanofer.zKothData.models.PlayerStats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This server's wins queued in the {@link WinBatchWriter} that the database may not have yet. A stats load adds
+ * them to the rows it read, otherwise a player who was not cached when they won would miss the win until the
+ * snapshot expires. Every queued win gets a sequence, and each {@link PlayerStats} remembers the newest one it
+ * contains, so a win queued while the load was in flight is added once the snapshot is cached, and only once.
+ */
+public class UnwrittenWins {
+
+    /** Read-locked while a load reads its rows and adds the queued wins, write-locked while a batch commits. */
+    private final ReadWriteLock commitLock = new ReentrantReadWriteLock();
+    private final AtomicLong lastSeq = new AtomicLong();
+    /** Queued wins per player in sequence order. Each list is only touched inside a compute of its key. */
+    private final Map<UUID, List<QueuedWin>> byPlayer = new ConcurrentHashMap<>();
+    /** Loads in flight. Written wins stay until none is left, a load may still have to add them to its snapshot. */
+    private final AtomicInteger loads = new AtomicInteger();
+
+    /**
+     * Queues a win before it is applied to the cache and submitted to the writer.
+     *
+     * @return the sequence of the win
+     */
+    public long add(UUID uuid, String kothName) {
+        long[] seq = new long[1];
+        byPlayer.compute(uuid, (key, wins) -> {
+            List<QueuedWin> result = wins != null ? wins : new ArrayList<>();
+            seq[0] = lastSeq.incrementAndGet();
+            result.add(new QueuedWin(seq[0], kothName));
+            return result;
+        });
+        return seq[0];
+    }
+
+    /**
+     * @return the sequence of the newest queued win
+     */
+    public long lastSeq() {
+        return lastSeq.get();
+    }
+
+    /**
+     * Registers a load, so the wins it has to add later are kept. Always paired with {@link #endLoad()}.
+     */
+    public void startLoad() {
+        loads.incrementAndGet();
+    }
+
+    public void endLoad() {
+        if (loads.decrementAndGet() == 0) {
+            Lock lock = commitLock.writeLock();
+            lock.lock();
+            try {
+                prune();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Held while a load reads its rows and calls {@link #snapshot}: no batch commits in between, so every
+     * win is either in the rows or still queued, never both.
+     */
+    public Lock loadLock() {
+        return commitLock.readLock();
+    }
+
+    /**
+     * Held by the writer from the commit of a batch until its wins are marked written.
+     */
+    Lock commitLock() {
+        return commitLock.writeLock();
+    }
+
+    /**
+     * Marks a win as written or dropped, called while the commit lock is held.
+     */
+    void written(UUID uuid, long seq) {
+        boolean prune = loads.get() == 0;
+        byPlayer.computeIfPresent(uuid, (key, wins) -> {
+            for (QueuedWin win : wins) {
+                if (win.seq == seq) {
+                    win.written = true;
+                }
+            }
+            if (prune) {
+                wins.removeIf(win -> win.written);
+            }
+            return wins.isEmpty() ? null : wins;
+        });
+    }
+
+    private void prune() {
+        if (loads.get() > 0) {
+            return;
+        }
+        for (UUID uuid : byPlayer.keySet()) {
+            byPlayer.computeIfPresent(uuid, (key, wins) -> {
+                wins.removeIf(win -> win.written);
+                return wins.isEmpty() ? null : wins;
+            });
+        }
+    }
+
+    /**
+     * Builds a snapshot from the rows of a load and the player's wins that are not written yet.
+     * Called while {@link #loadLock()} is held.
+     */
+    public PlayerStats snapshot(UUID uuid, Map<String, Integer> rows) {
+        PlayerStats[] snapshot = new PlayerStats[1];
+        byPlayer.compute(uuid, (key, wins) -> {
+            Map<String, Integer> merged = rows;
+            if (wins != null) {
+                merged = new HashMap<>(rows);
+                for (QueuedWin win : wins) {
+                    if (!win.written) {
+                        merged.merge(win.kothName, 1, Integer::sum);
+                    }
+                }
+            }
+            snapshot[0] = PlayerStats.of(merged, lastSeq.get());
+            return wins;
+        });
+        return snapshot[0];
+    }
+
+    /**
+     * Builds a snapshot from rows read without {@link #loadLock()}, as the stats stream does. The rows may or
+     * may not contain the player's queued wins, so only a player without any gets one.
+     *
+     * @return the snapshot, or null if the player has queued wins
+     */
+    public PlayerStats snapshotIfIdle(UUID uuid, Map<String, Integer> rows) {
+        // Read first: a win queued after this is newer than the snapshot and added by catchUp().
+        long seq = lastSeq.get();
+        return byPlayer.containsKey(uuid) ? null : PlayerStats.of(rows, seq);
+    }
+
+    /**
+     * @return the snapshot plus the player's queued wins newer than it
+     */
+    public PlayerStats catchUp(UUID uuid, PlayerStats stats) {
+        PlayerStats[] result = {stats};
+        byPlayer.computeIfPresent(uuid, (key, wins) -> {
+            for (QueuedWin win : wins) {
+                if (win.seq > result[0].getQueuedSeq()) {
+                    result[0] = result[0].withQueuedWin(win.kothName, win.seq);
+                }
+            }
+            return wins;
+        });
+        return result[0];
+    }
+
+    private static final class QueuedWin {
+        private final long seq;
+        private final String kothName;
+        private boolean written;
+
+        private QueuedWin(long seq, String kothName) {
+            this.seq = seq;
+            this.kothName = kothName;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.stephanofer.zKothData.database;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * Converts UUIDs to and from the BINARY(16) key columns without going through their string form.
+ */
+public final class UuidCodec {
+
+    private UuidCodec() {
+    }
+
+    public static byte[] toBytes(UUID uuid) {
+        byte[] bytes = new byte[16];
+        putLong(bytes, 0, uuid.getMostSignificantBits());
+        putLong(bytes, 8, uuid.getLeastSignificantBits());
+        return bytes;
+    }
+
+    public static UUID fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != 16) {
+            return null;
+        }
+        return new UUID(getLong(bytes, 0), getLong(bytes, 8));
+    }
+
+    public static void setUuid(PreparedStatement stmt, int index, UUID uuid) throws SQLException {
+        stmt.setBytes(index, toBytes(uuid));
+    }
+
+    public static UUID getUuid(ResultSet rs, String column) throws SQLException {
+        return fromBytes(rs.getBytes(column));
+    }
+
+    private static void putLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
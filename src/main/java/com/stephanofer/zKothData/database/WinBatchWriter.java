@@ -0,0 +1,526 @@
+package com.stephanofer.zKothData.database;
+
+import com.stephanofer.zKothData.ZKothData;
+import com.stephanofer.zKothData.models.KothWinDTO;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Level;
+
+/**
+ * Write-behind queue for KotH wins.
+ * Wins are collected and written together once the batch size is reached or the flush interval expires,
+ * so several KotHs ending at the same time cost a single transaction instead of one per winner.
+ * With a {@link WinJournal} every win is on disk before it is acknowledged, and a batch the database
+ * rejects is kept and retried first instead of being dropped.
+ */
+public class WinBatchWriter {
+
+    private static final String UPSERT_PLAYER =
+            "INSERT INTO koth_players (uuid, name) VALUES (?, ?) " +
+                    "ON DUPLICATE KEY UPDATE name = VALUES(name), last_seen = CURRENT_TIMESTAMP";
+
+    private static final String INSERT_WIN =
+            "INSERT INTO koth_wins (player_uuid, arena_id, win_time) VALUES (?, ?, ?)";
+
+    private static final String UPSERT_STATS =
+            "INSERT INTO koth_stats (player_uuid, arena_id, wins) VALUES (?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE wins = wins + VALUES(wins)";
+
+    private static final String UPSERT_DAILY_STATS =
+            "INSERT INTO koth_stats_daily (player_uuid, arena_id, day, wins) VALUES (?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE wins = wins + VALUES(wins)";
+
+    private static final String SELECT_JOURNAL_SEQ =
+            "SELECT last_seq FROM koth_journal WHERE server_id = ? FOR UPDATE";
+
+    private static final String UPSERT_JOURNAL_SEQ =
+            "INSERT INTO koth_journal (server_id, last_seq) VALUES (?, ?) " +
+                    "ON DUPLICATE KEY UPDATE last_seq = GREATEST(last_seq, VALUES(last_seq))";
+
+    private static final String INSERT_EVENT =
+            "INSERT INTO koth_events (server_id, player_uuid, player_name, arena_id, day) VALUES (?, ?, ?, ?, ?)";
+
+    private final ZKothData plugin;
+    private final DatabaseConnector databaseConnector;
+    private final DatabaseExecutor databaseExecutor;
+    private final ArenaRegistry arenaRegistry;
+    private final CompletableFuture<Boolean> tablesReady;
+    private final WinJournal journal;
+    private final UnwrittenWins unwrittenWins;
+    /** Server id written with each koth_events row, null while cross-server events are off. */
+    private volatile UUID eventServerId;
+
+    /** Batch the database rejected, written again before anything newer. Guarded by flushLock. */
+    private List<PendingWin> retry = new ArrayList<>();
+    private volatile boolean retryPending = false;
+    private final Queue<PendingWin> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+    private final Object flushLock = new Object();
+
+    private final int batchSize;
+    private final BukkitTask flushTask;
+
+    /** Sequences of this run that collide with ones the database already applied, -1 until the first write. */
+    private long lostUpTo = -1;
+
+    private long flushes = 0;
+    private long flushedWins = 0;
+
+    public WinBatchWriter(ZKothData plugin, DatabaseConnector databaseConnector, DatabaseExecutor databaseExecutor,
+                          ArenaRegistry arenaRegistry, CompletableFuture<Boolean> tablesReady, WinJournal journal,
+                          UnwrittenWins unwrittenWins, int batchSize, long flushIntervalTicks) {
+        this.plugin = plugin;
+        this.databaseConnector = databaseConnector;
+        this.databaseExecutor = databaseExecutor;
+        this.arenaRegistry = arenaRegistry;
+        this.tablesReady = tablesReady;
+        this.journal = journal;
+        this.unwrittenWins = unwrittenWins;
+        this.batchSize = Math.max(1, batchSize);
+
+        this.flushTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+            if (pendingCount.get() > 0 || retryPending) {
+                scheduleFlush();
+            }
+        }, flushIntervalTicks, flushIntervalTicks);
+    }
+
+    /**
+     * Also writes every win to koth_events, in the same transaction, for {@link DatabaseEventTransport}.
+     */
+    public void recordEvents(UUID serverId) {
+        this.eventServerId = serverId;
+    }
+
+    /**
+     * Queues a win. The future completes once the win is durable: synced to the journal, or written to the
+     * database when there is no journal or the append to it failed.
+     *
+     * @param queuedSeq sequence of the win in the {@link UnwrittenWins}, which learn when it is written
+     */
+    public CompletableFuture<Boolean> submit(KothWinDTO win, long queuedSeq) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        long seq = 0;
+        if (journal != null) {
+            try {
+                seq = journal.append(win);
+            } catch (IOException ex) {
+                plugin.getLogger().log(Level.SEVERE, "No se pudo escribir la victoria en el journal: " + win, ex);
+            }
+        }
+        enqueue(new PendingWin(seq, queuedSeq, win, future, false));
+        return future;
+    }
+
+    /**
+     * Queues wins recovered from the journal after a restart. Wins the database already has are skipped on write.
+     */
+    public void submitRecovered(List<WinJournal.Entry> entries) {
+        for (WinJournal.Entry entry : entries) {
+            enqueue(new PendingWin(entry.getSeq(), 0, entry.getWin(), null, true));
+        }
+    }
+
+    private void enqueue(PendingWin pendingWin) {
+        pending.add(pendingWin);
+        if (pendingCount.incrementAndGet() >= batchSize) {
+            scheduleFlush();
+        }
+    }
+
+    private void scheduleFlush() {
+        // Nothing is written until the schema is created and migrated.
+        if (!tablesReady.getNow(false) || !flushQueued.compareAndSet(false, true)) {
+            return;
+        }
+
+        databaseExecutor.runWrite(() -> {
+            flushQueued.set(false);
+            flush();
+        }).exceptionally(ex -> {
+            flushQueued.set(false);
+            return null;
+        });
+    }
+
+    /**
+     * Writes every pending win in one transaction. Safe to call from any thread.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<PendingWin> batch = retry;
+            batch.addAll(drain());
+            retry = new ArrayList<>();
+            if (batch.isEmpty()) {
+                retryPending = false;
+                return;
+            }
+
+            boolean journaled = syncJournal();
+            if (journaled) {
+                // Wins whose append failed are only on the heap, they are acknowledged once the database has them.
+                for (PendingWin pendingWin : batch) {
+                    if (pendingWin.seq > 0 && pendingWin.future != null) {
+                        pendingWin.future.complete(true);
+                    }
+                }
+            }
+
+            if (!databaseConnector.isAvailable()) {
+                // Degraded mode: the wins stay queued in order until the circuit breaker closes again.
+                retry = batch;
+                retryPending = true;
+                return;
+            }
+
+            boolean success;
+            // Stats loads wait, so each win is either in the rows they read or still queued for them
+            Lock commitLock = unwrittenWins.commitLock();
+            commitLock.lock();
+            try {
+                success = write(batch);
+                if (success || !journaled) {
+                    // Written, or dropped below: either way no load should add them again
+                    for (PendingWin pendingWin : batch) {
+                        if (pendingWin.queuedSeq > 0) {
+                            unwrittenWins.written(pendingWin.win.getPlayerUuid(), pendingWin.queuedSeq);
+                        }
+                    }
+                }
+            } finally {
+                commitLock.unlock();
+            }
+            if (success) {
+                // No-op for the wins already acknowledged from the journal
+                complete(batch, true);
+                flushes++;
+                flushedWins += batch.size();
+                confirmJournal(batch);
+            } else if (journaled) {
+                // Order matters: the journal watermark only moves forward, so this batch goes first next time.
+                retry = batch;
+                plugin.getLogger().warning("No se pudieron guardar " + batch.size() +
+                        " victorias de KotH, siguen en el journal y se reintentarán");
+            } else {
+                complete(batch, false);
+                plugin.getLogger().severe("No se pudieron guardar " + batch.size() + " victorias de KotH");
+            }
+            retryPending = !retry.isEmpty();
+
+            if (pendingCount.get() >= batchSize) {
+                scheduleFlush();
+            }
+        }
+    }
+
+    private boolean syncJournal() {
+        if (journal == null) {
+            return false;
+        }
+        try {
+            journal.sync();
+            return true;
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "No se pudo sincronizar el journal de victorias", ex);
+            return false;
+        }
+    }
+
+    private void confirmJournal(List<PendingWin> batch) {
+        long maxSeq = maxSeq(batch);
+        if (journal == null || maxSeq == 0) {
+            return;
+        }
+        try {
+            journal.confirm(maxSeq);
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.WARNING, "No se pudo compactar el journal de victorias", ex);
+        }
+    }
+
+    private static long maxSeq(List<PendingWin> batch) {
+        long maxSeq = 0;
+        for (PendingWin pendingWin : batch) {
+            maxSeq = Math.max(maxSeq, pendingWin.seq);
+        }
+        return maxSeq;
+    }
+
+    private static void complete(List<PendingWin> batch, boolean success) {
+        for (PendingWin pendingWin : batch) {
+            if (pendingWin.future != null) {
+                pendingWin.future.complete(success);
+            }
+        }
+    }
+
+    private List<PendingWin> drain() {
+        List<PendingWin> batch = new ArrayList<>();
+        PendingWin next;
+        while ((next = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private boolean write(List<PendingWin> batch) {
+        AtomicBoolean success = new AtomicBoolean(false);
+        AtomicInteger rows = new AtomicInteger();
+        databaseConnector.connect("win_batch", connection -> {
+            List<PendingWin> wins = skipApplied(connection, batch);
+
+            Map<UUID, String> players = new LinkedHashMap<>();
+            Map<StatsKey, Integer> increments = new LinkedHashMap<>();
+            Map<StatsKey, Integer> dailyIncrements = new LinkedHashMap<>();
+            for (PendingWin pendingWin : wins) {
+                KothWinDTO win = pendingWin.win;
+                players.put(win.getPlayerUuid(), win.getPlayerName());
+                increments.merge(new StatsKey(win.getPlayerUuid(), win.getKothName(), null), 1, Integer::sum);
+                dailyIncrements.merge(new StatsKey(win.getPlayerUuid(), win.getKothName(),
+                        win.getWinTime().toLocalDate()), 1, Integer::sum);
+            }
+
+            Map<String, Integer> arenaIds = new HashMap<>();
+            for (PendingWin pendingWin : wins) {
+                String kothName = pendingWin.win.getKothName();
+                if (!arenaIds.containsKey(kothName)) {
+                    arenaIds.put(kothName, arenaRegistry.resolve(connection, kothName));
+                }
+            }
+
+            try (PreparedStatement stmt = connection.prepareStatement(UPSERT_PLAYER)) {
+                for (Map.Entry<UUID, String> entry : players.entrySet()) {
+                    UuidCodec.setUuid(stmt, 1, entry.getKey());
+                    stmt.setString(2, entry.getValue());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+
+            try (PreparedStatement stmt = connection.prepareStatement(INSERT_WIN)) {
+                for (PendingWin pendingWin : wins) {
+                    UuidCodec.setUuid(stmt, 1, pendingWin.win.getPlayerUuid());
+                    stmt.setInt(2, arenaIds.get(pendingWin.win.getKothName()));
+                    stmt.setTimestamp(3, Timestamp.valueOf(pendingWin.win.getWinTime()));
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+
+            try (PreparedStatement stmt = connection.prepareStatement(UPSERT_STATS)) {
+                for (Map.Entry<StatsKey, Integer> entry : increments.entrySet()) {
+                    UuidCodec.setUuid(stmt, 1, entry.getKey().playerUuid);
+                    stmt.setInt(2, arenaIds.get(entry.getKey().kothName));
+                    stmt.setInt(3, entry.getValue());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+
+            try (PreparedStatement stmt = connection.prepareStatement(UPSERT_DAILY_STATS)) {
+                for (Map.Entry<StatsKey, Integer> entry : dailyIncrements.entrySet()) {
+                    UuidCodec.setUuid(stmt, 1, entry.getKey().playerUuid);
+                    stmt.setInt(2, arenaIds.get(entry.getKey().kothName));
+                    stmt.setObject(3, entry.getKey().day);
+                    stmt.setInt(4, entry.getValue());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+
+            UUID serverId = eventServerId;
+            if (serverId != null) {
+                try (PreparedStatement stmt = connection.prepareStatement(INSERT_EVENT)) {
+                    for (PendingWin pendingWin : wins) {
+                        UuidCodec.setUuid(stmt, 1, serverId);
+                        UuidCodec.setUuid(stmt, 2, pendingWin.win.getPlayerUuid());
+                        stmt.setString(3, pendingWin.win.getPlayerName());
+                        stmt.setInt(4, arenaIds.get(pendingWin.win.getKothName()));
+                        stmt.setObject(5, pendingWin.win.getWinTime().toLocalDate());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+            }
+
+            long maxSeq = maxSeq(batch);
+            if (journal != null && maxSeq > 0) {
+                try (PreparedStatement stmt = connection.prepareStatement(UPSERT_JOURNAL_SEQ)) {
+                    UuidCodec.setUuid(stmt, 1, journal.getServerId());
+                    stmt.setLong(2, maxSeq);
+                    stmt.executeUpdate();
+                }
+            }
+
+            rows.set(players.size() + wins.size() + increments.size() + dailyIncrements.size());
+            success.set(true);
+        }, true);
+
+        if (success.get()) {
+            databaseConnector.getQueryMetrics().recordRows("win_batch", rows.get());
+        }
+        logDebug("Flushed " + batch.size() + " wins as " + rows.get() + " rows, success: " + success.get());
+        return success.get();
+    }
+
+    /**
+     * Drops the journaled wins this server already wrote, which happens when a batch is replayed after a crash
+     * between the commit and the journal confirmation. Locks the server's row until the batch commits.
+     */
+    private List<PendingWin> skipApplied(Connection connection, List<PendingWin> batch) throws SQLException {
+        if (journal == null) {
+            return batch;
+        }
+
+        long applied = 0;
+        try (PreparedStatement stmt = connection.prepareStatement(SELECT_JOURNAL_SEQ)) {
+            UuidCodec.setUuid(stmt, 1, journal.getServerId());
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    applied = rs.getLong("last_seq");
+                }
+            }
+        }
+        if (applied == 0) {
+            return batch;
+        }
+        renumberLostSequences(applied, batch);
+
+        List<PendingWin> wins = new ArrayList<>(batch.size());
+        for (PendingWin pendingWin : batch) {
+            if (pendingWin.seq == 0 || pendingWin.seq > applied) {
+                wins.add(pendingWin);
+            }
+        }
+        if (wins.size() < batch.size()) {
+            logDebug("Skipped " + (batch.size() - wins.size()) + " journaled wins already in the database");
+        }
+        return wins;
+    }
+
+    /**
+     * The first write compares the database watermark with the journal. If the database is ahead, the journal was
+     * deleted or lost records, and the wins of this run were numbered over sequences already applied: they would
+     * be skipped as replays. The journal continues after the watermark and those wins are appended again with
+     * fresh sequences; their old records are at or below the watermark, so a replay after a crash skips them.
+     */
+    private void renumberLostSequences(long applied, List<PendingWin> batch) {
+        if (lostUpTo < 0) {
+            lostUpTo = applied > journal.getOpenedSeq() ? applied : 0;
+            if (lostUpTo > 0) {
+                journal.advanceTo(applied);
+            }
+        }
+        if (lostUpTo == 0) {
+            return;
+        }
+
+        boolean renumbered = false;
+        for (PendingWin pendingWin : batch) {
+            if (!pendingWin.replay && pendingWin.seq > journal.getOpenedSeq() && pendingWin.seq <= lostUpTo) {
+                try {
+                    pendingWin.seq = journal.append(pendingWin.win);
+                    renumbered = true;
+                } catch (IOException ex) {
+                    plugin.getLogger().log(Level.SEVERE, "No se pudo escribir la victoria en el journal: " +
+                            pendingWin.win, ex);
+                    pendingWin.seq = 0;
+                }
+            }
+        }
+        if (renumbered) {
+            syncJournal();
+        }
+    }
+
+    public void close() {
+        flushTask.cancel();
+        flush();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException ex) {
+                plugin.getLogger().log(Level.WARNING, "No se pudo cerrar el journal de victorias", ex);
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public void logStatistics() {
+        synchronized (flushLock) {
+            plugin.getLogger().info("Win batches: flushes=" + flushes + ", wins=" + flushedWins +
+                    ", avg batch=" + (flushes > 0 ? String.format("%.1f", flushedWins / (double) flushes) : "N/A") +
+                    ", pending=" + pendingCount.get());
+        }
+    }
+
+    private void logDebug(String message) {
+        if (plugin.getConfig().getBoolean("debug", false)) {
+            plugin.getLogger().info("[DB] " + message);
+        }
+    }
+
+    private static final class PendingWin {
+        /** Journal sequence, 0 if the win is not in the journal. Renumbered under flushLock. */
+        private long seq;
+        /** Sequence in the UnwrittenWins, 0 for wins recovered from the journal. */
+        private final long queuedSeq;
+        private final KothWinDTO win;
+        private final CompletableFuture<Boolean> future;
+        /** Recovered from the journal at startup rather than submitted by this run. */
+        private final boolean replay;
+
+        private PendingWin(long seq, long queuedSeq, KothWinDTO win, CompletableFuture<Boolean> future,
+                           boolean replay) {
+            this.seq = seq;
+            this.queuedSeq = queuedSeq;
+            this.win = win;
+            this.future = future;
+            this.replay = replay;
+        }
+    }
+
+    private static final class StatsKey {
+        private final UUID playerUuid;
+        private final String kothName;
+        private final LocalDate day;
+
+        private StatsKey(UUID playerUuid, String kothName, LocalDate day) {
+            this.playerUuid = playerUuid;
+            this.kothName = kothName;
+            this.day = day;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof StatsKey)) return false;
+            StatsKey other = (StatsKey) o;
+            return playerUuid.equals(other.playerUuid) && kothName.equals(other.kothName)
+                    && Objects.equals(day, other.day);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * playerUuid.hashCode() + kothName.hashCode()) + Objects.hashCode(day);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.stephanofer.zKothData.database;
+
+import com.stephanofer.zKothData.models.KothWinDTO;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of KotH wins, written before a win is acknowledged so it survives a database outage or a crash.
+ * Appends only hit the page cache; {@link #sync()} forces them to disk once per write-behind flush.
+ * Every win gets an increasing sequence number, and the database keeps the highest sequence applied
+ * per server in koth_journal, so replaying a win that already reached the database is a no-op.
+ * Once the confirmed records reach the compact size, the file is rewritten as a checkpoint record followed by
+ * the records that are still unconfirmed.
+ *
+ * Appends hold the journal's monitor only to number and write a record. Syncing and compacting are serialized
+ * by a separate lock, and the force itself runs outside the monitor, so an append never waits for the disk.
+ *
+ * Record layout: int length, then the body (byte type, long seq, payload), then the CRC32 of the body.
+ */
+public class WinJournal implements Closeable {
+
+    private static final String FILE_NAME = "wins.journal";
+    private static final String SERVER_ID_FILE = "server-id";
+    private static final byte TYPE_WIN = 1;
+    private static final byte TYPE_CHECKPOINT = 2;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+    private final File directory;
+    private final File file;
+    private final Logger logger;
+    private final long compactSize;
+    private final UUID serverId;
+    private final List<Entry> recovered = new ArrayList<>();
+    /** Held by sync, compact and close. Taken before the monitor, never while holding it. */
+    private final Object syncLock = new Object();
+    /** Position in the file of every record that is not confirmed yet, by sequence. */
+    private final TreeMap<Long, Long> unconfirmed = new TreeMap<>();
+
+    private FileChannel channel;
+    /** End of the last record appended, the next one starts here. */
+    private long size;
+    private long lastSeq;
+    /** Highest sequence found on disk when the journal was opened. */
+    private long opened;
+    private long confirmedSeq;
+    private boolean dirty;
+
+    public WinJournal(File directory, long compactSize, Logger logger) throws IOException {
+        this.directory = directory;
+        this.file = new File(directory, FILE_NAME);
+        this.logger = logger;
+        this.compactSize = compactSize;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("No se pudo crear " + directory);
+        }
+        this.serverId = loadServerId(new File(directory, SERVER_ID_FILE));
+        recover();
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.size = channel.size();
+    }
+
+    private static UUID loadServerId(File idFile) throws IOException {
+        if (idFile.isFile()) {
+            return UUID.fromString(new String(Files.readAllBytes(idFile.toPath()), StandardCharsets.UTF_8).trim());
+        }
+        UUID id = UUID.randomUUID();
+        Files.write(idFile.toPath(), id.toString().getBytes(StandardCharsets.UTF_8));
+        return id;
+    }
+
+    /**
+     * Reads every intact record. A damaged record, like the torn tail left by a crash in the middle of an append,
+     * is skipped by scanning forward to the next record whose length and CRC check out, and the file is
+     * rewritten without the damaged bytes.
+     */
+    private void recover() throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        ByteArrayOutputStream intact = new ByteArrayOutputStream(data.capacity());
+        int position = 0;
+        while (position + 4 <= data.capacity()) {
+            int length = data.getInt(position);
+            if (length > 0 && length <= MAX_RECORD_SIZE && position + 8 + length <= data.capacity()) {
+                byte[] body = new byte[length];
+                data.position(position + 4);
+                data.get(body);
+                if (data.getInt() == checksum(body) && readRecord(body, intact.size())) {
+                    intact.write(data.array(), position, 8 + length);
+                    position += 8 + length;
+                    continue;
+                }
+            }
+            position++;
+        }
+        opened = lastSeq;
+
+        int discarded = data.capacity() - intact.size();
+        if (discarded > 0) {
+            logger.warning("Journal de victorias dañado, se descartan " + discarded + " bytes y se conservan " +
+                    "los registros intactos");
+            File temp = new File(directory, FILE_NAME + ".tmp");
+            try (FileChannel tempChannel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(intact.toByteArray());
+                while (buffer.hasRemaining()) {
+                    tempChannel.write(buffer);
+                }
+                tempChannel.force(true);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        confirmedSeq = Math.min(confirmedSeq, lastSeq);
+    }
+
+    /**
+     * @param position where the record starts in the file once the damaged bytes are discarded
+     * @return false if the body does not parse, which only happens when the scan hit a CRC collision
+     */
+    private boolean readRecord(byte[] body, long position) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            byte type = in.readByte();
+            long seq = in.readLong();
+            if (type == TYPE_CHECKPOINT) {
+                confirmedSeq = Math.max(confirmedSeq, seq);
+                recovered.removeIf(entry -> entry.seq <= seq);
+                unconfirmed.headMap(seq, true).clear();
+            } else if (type == TYPE_WIN) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                String playerName = in.readUTF();
+                String kothName = in.readUTF();
+                LocalDateTime winTime = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+                if (seq > confirmedSeq) {
+                    recovered.add(new Entry(seq, new KothWinDTO(uuid, playerName, kothName, winTime)));
+                    unconfirmed.put(seq, position);
+                }
+            } else {
+                return false;
+            }
+            lastSeq = Math.max(lastSeq, seq);
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * @return wins found on disk that were not confirmed as written to the database
+     */
+    public List<Entry> getRecovered() {
+        return Collections.unmodifiableList(recovered);
+    }
+
+    public UUID getServerId() {
+        return serverId;
+    }
+
+    /**
+     * @return the highest sequence found on disk when the journal was opened; later appends are above it
+     */
+    public long getOpenedSeq() {
+        return opened;
+    }
+
+    /**
+     * Continues numbering after the given sequence. Used when the database has applied sequences this file
+     * never saw, because the journal was deleted or lost records, so new wins are not mistaken for replays.
+     */
+    public synchronized void advanceTo(long seq) {
+        if (seq > lastSeq) {
+            logger.warning("El journal de victorias va por " + lastSeq + " pero la base de datos ya aplicó " + seq +
+                    ", se continúa desde ahí");
+            lastSeq = seq;
+        }
+    }
+
+    /**
+     * Appends a win without forcing it to disk. The record is encoded before taking the monitor.
+     * @return the sequence number of the win
+     */
+    public long append(KothWinDTO win) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TYPE_WIN);
+        out.writeLong(0);
+        out.writeLong(win.getPlayerUuid().getMostSignificantBits());
+        out.writeLong(win.getPlayerUuid().getLeastSignificantBits());
+        out.writeUTF(win.getPlayerName() != null ? win.getPlayerName() : "");
+        out.writeUTF(win.getKothName());
+        out.writeLong(win.getWinTime().toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(win.getWinTime().getNano());
+        byte[] body = bytes.toByteArray();
+
+        synchronized (this) {
+            long seq = lastSeq + 1;
+            ByteBuffer.wrap(body).putLong(1, seq);
+            long start = size;
+            try {
+                size += write(channel, body);
+            } catch (IOException ex) {
+                // Part of the record may be on disk, the next one starts after it and recovery skips the torn bytes
+                size = channel.size();
+                throw ex;
+            }
+            unconfirmed.put(seq, start);
+            lastSeq = seq;
+            dirty = true;
+            return seq;
+        }
+    }
+
+    /**
+     * Forces every append so far to disk. Called once per batch instead of once per win.
+     * Appends made while the force runs are not waited for, they are forced by the next sync.
+     */
+    public void sync() throws IOException {
+        synchronized (syncLock) {
+            FileChannel target;
+            synchronized (this) {
+                if (!dirty) {
+                    return;
+                }
+                dirty = false;
+                // Only compact() replaces the channel, and it holds syncLock too
+                target = channel;
+            }
+            try {
+                target.force(false);
+            } catch (IOException ex) {
+                synchronized (this) {
+                    dirty = true;
+                }
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Marks every win up to the sequence as written to the database. Once the confirmed records reach the
+     * compact size the file is compacted, even if newer wins are still waiting for their batch.
+     */
+    public void confirm(long seq) throws IOException {
+        synchronized (syncLock) {
+            long confirmedBytes;
+            synchronized (this) {
+                confirmedSeq = Math.max(confirmedSeq, seq);
+                unconfirmed.headMap(confirmedSeq, true).clear();
+                confirmedBytes = tailStart();
+            }
+            if (confirmedBytes >= compactSize) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * @return where the first unconfirmed record starts, records are in sequence order so the rest follow it
+     */
+    private long tailStart() {
+        return unconfirmed.isEmpty() ? size : unconfirmed.firstEntry().getValue();
+    }
+
+    /**
+     * Replaces the file with a checkpoint record followed by the unconfirmed records, written to a temporary file
+     * and moved into place. Appends wait while the tail is copied, which is at most the wins of the next batch.
+     */
+    private void compact() throws IOException {
+        File temp = new File(directory, FILE_NAME + ".tmp");
+        synchronized (this) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(TYPE_CHECKPOINT);
+            out.writeLong(confirmedSeq);
+
+            long tailStart = tailStart();
+            long shift;
+            try (FileChannel tempChannel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                shift = write(tempChannel, bytes.toByteArray()) - tailStart;
+                long copied = 0;
+                while (copied < size - tailStart) {
+                    copied += source.transferTo(tailStart + copied, size - tailStart - copied, tempChannel);
+                }
+                tempChannel.force(true);
+            }
+
+            channel.close();
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                // The old file is still in place, keep appending to it
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                throw ex;
+            }
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            size += shift;
+            unconfirmed.replaceAll((seq, position) -> position + shift);
+            // The tail was forced with the temporary file
+            dirty = false;
+        }
+    }
+
+    /**
+     * @return the size of the record
+     */
+    private static int write(FileChannel target, byte[] body) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + body.length + 4);
+        buffer.putInt(body.length).put(body).putInt(checksum(body));
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        return buffer.capacity();
+    }
+
+    private static int checksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            sync();
+            synchronized (this) {
+                channel.close();
+            }
+        }
+    }
+
+    public static final class Entry {
+        private final long seq;
+        private final KothWinDTO win;
+
+        private Entry(long seq, KothWinDTO win) {
+            this.seq = seq;
+            this.win = win;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public KothWinDTO getWin() {
+            return win;
+        }
+    }
+}
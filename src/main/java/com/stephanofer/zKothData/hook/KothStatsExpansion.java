@@ -3,24 +3,34 @@ package com.stephanofer.zKothData.hook;
 import com.stephanofer.zKothData.KothDataCache;
 import com.stephanofer.zKothData.ZKothData;
 import com.stephanofer.zKothData.database.DatabaseManager;
-import com.stephanofer.zKothData.models.SortedPlayer;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import org.bukkit.OfflinePlayer;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.List;
-import java.util.UUID;
-
+/**
+ * Placeholders:
+ * - total_wins, wins_<koth>, rank, rank_<koth>
+ * - top_<position>_<name|wins>, top_<koth>_<position>_<name|wins>
+ * - <daily|weekly|monthly|season>_total_wins, <window>_rank, <window>_top_<position>_<name|wins>
+ */
 public class KothStatsExpansion extends PlaceholderExpansion {
+
     private final ZKothData plugin;
     private final DatabaseManager databaseManager;
     private final KothDataCache kothDataCache;
+    private final PlaceholderCompiler placeholderCompiler;
+    private final String loadingText;
 
 
     public KothStatsExpansion(ZKothData plugin) {
         this.plugin = plugin;
         this.databaseManager = plugin.getDatabaseManager();
         this.kothDataCache = plugin.getDatabaseManager().getKothDataCache();
+        OfflineStatsWarmer statsWarmer = new OfflineStatsWarmer(databaseManager,
+                plugin.getConfig().getLong("placeholders.missing-player-cache", 300L),
+                plugin.getConfig().getLong("placeholders.retry-delay", 5L));
+        this.loadingText = plugin.getConfig().getString("placeholders.loading", "...");
+        this.placeholderCompiler = new PlaceholderCompiler(kothDataCache, statsWarmer, loadingText);
     }
 
 
@@ -49,79 +59,11 @@ public class KothStatsExpansion extends PlaceholderExpansion {
         if (player == null) {
             return "";
         }
-        UUID uuid = player.getUniqueId();
-
-        if (identifier.equals("total_wins")) {
-            return String.valueOf(getTotalWins(uuid));
-        }
-
-        if (identifier.startsWith("wins_")) {
-            String kothName = identifier.substring(5);
-            return String.valueOf(getKothWins(uuid, kothName));
-        }
-
-        if (identifier.startsWith("top_")) {
-            return handleTopPlaceholder(identifier);
-        }
-
-        return null;
-    }
-
-    private int getTotalWins(UUID uuid) {
-        return kothDataCache.getTotalWins(uuid);
-    }
-
-    private int getKothWins(UUID uuid, String kothName) {
-       return kothDataCache.getKothWins(uuid, kothName);
-    }
-
-    /**
-     * Handle top player placeholders
-     * Format: top_<position>_<field>
-     * Examples:
-     * - zkoth_top_1_name
-     * - zkoth_top_1_wins
-     * @param identifier The full identifier
-     * @return The placeholder value
-     */
-    /**
-     * Handle top player placeholders
-     * Format: top_<position>_<field>
-     * Examples:
-     * - zkoth_top_1_name
-     * - zkoth_top_1_wins
-     * @param identifier The full identifier
-     * @return The placeholder value
-     */
-    private String handleTopPlaceholder(String identifier) {
-        String[] parts = identifier.split("_");
-        if (parts.length < 3) {
-            return "0";
-        }
-
-        try {
-            int position = Integer.parseInt(parts[1]);
-            String field = parts[2];
-
-            List<SortedPlayer> topPlayers = kothDataCache.getTopPlayers();
-
-            if (position <= 0 || position > topPlayers.size()) {
-                return field.equals("name") ? "Ninguno" : "0";
-            }
-
-            SortedPlayer playerData = topPlayers.get(position - 1);
-
-            switch (field) {
-                case "name":
-                    return playerData.getName();
-                case "wins":
-                    return String.valueOf(playerData.getTotalWins());
-                default:
-                    return "0";
-            }
-        } catch (NumberFormatException e) {
-            return "0";
+        if (!kothDataCache.isWarm()) {
+            // The leaderboards are still loading, showing zeros now would be wrong.
+            return loadingText;
         }
+        return placeholderCompiler.get(identifier).resolve(player.getUniqueId());
     }
 
 }
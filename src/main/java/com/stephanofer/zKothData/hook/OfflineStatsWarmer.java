@@ -0,0 +1,60 @@
+package com.stephanofer.zKothData.hook;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.stephanofer.zKothData.KothDataCache;
+import com.stephanofer.zKothData.database.DatabaseManager;
+import com.stephanofer.zKothData.models.PlayerStats;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills the stats cache for players that are not cached yet, typically offline players shown on holograms or NPCs.
+ * A miss starts a background load and the placeholder shows a loading text until it lands. Players without any
+ * stats are remembered for a while, and a player is not requested again until the retry delay has passed,
+ * so a placeholder refreshed every second costs at most one query per player and delay.
+ */
+class OfflineStatsWarmer {
+
+    private final DatabaseManager databaseManager;
+    private final KothDataCache kothDataCache;
+    private final Cache<UUID, Boolean> playersWithoutStats;
+    private final Cache<UUID, Boolean> recentRequests;
+
+    OfflineStatsWarmer(DatabaseManager databaseManager, long missingPlayerSeconds, long retryDelaySeconds) {
+        this.databaseManager = databaseManager;
+        this.kothDataCache = databaseManager.getKothDataCache();
+        this.playersWithoutStats = CacheBuilder.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(missingPlayerSeconds, TimeUnit.SECONDS)
+                .build();
+        this.recentRequests = CacheBuilder.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(retryDelaySeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * @return the player's stats, {@link PlayerStats#EMPTY} for players known to have none,
+     * or null while they are being loaded
+     */
+    PlayerStats get(UUID uuid) {
+        PlayerStats stats = kothDataCache.getStatsSnapshot(uuid);
+        if (stats != null) {
+            return stats;
+        }
+        if (playersWithoutStats.getIfPresent(uuid) != null) {
+            return PlayerStats.EMPTY;
+        }
+        if (recentRequests.asMap().putIfAbsent(uuid, Boolean.TRUE) == null) {
+            databaseManager.getPlayerStats(uuid).thenAccept(loaded -> {
+                // Degraded mode also returns an empty result, so it is only trusted if it got cached.
+                if (loaded.isEmpty() && kothDataCache.getStatsSnapshot(uuid) != null) {
+                    playersWithoutStats.put(uuid, Boolean.TRUE);
+                }
+            });
+        }
+        return null;
+    }
+}
@@ -0,0 +1,198 @@
+package com.stephanofer.zKothData.hook;
+
+import com.stephanofer.zKothData.KothDataCache;
+import com.stephanofer.zKothData.leaderboard.Leaderboard;
+import com.stephanofer.zKothData.leaderboard.TimeWindow;
+import com.stephanofer.zKothData.models.PlayerStats;
+import com.stephanofer.zKothData.models.SortedPlayer;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parses each placeholder identifier once into a {@link Resolver} that is cached and reused,
+ * so a request is a map lookup plus the data read: no splitting, parsing or boxing per call.
+ */
+class PlaceholderCompiler {
+
+    private static final int MAX_CACHED_IDENTIFIERS = 4096;
+    private static final int CACHED_NUMBERS = 1024;
+    private static final String[] NUMBERS = new String[CACHED_NUMBERS];
+    private static final String NO_PLAYER = "Ninguno";
+
+    private static final Resolver UNKNOWN = uuid -> null;
+    private static final Resolver ZERO = uuid -> "0";
+
+    static {
+        for (int i = 0; i < CACHED_NUMBERS; i++) {
+            NUMBERS[i] = String.valueOf(i).intern();
+        }
+    }
+
+    private final KothDataCache kothDataCache;
+    private final OfflineStatsWarmer statsWarmer;
+    private final String loadingText;
+    private final Map<String, Resolver> resolvers = new ConcurrentHashMap<>();
+
+    PlaceholderCompiler(KothDataCache kothDataCache, OfflineStatsWarmer statsWarmer, String loadingText) {
+        this.kothDataCache = kothDataCache;
+        this.statsWarmer = statsWarmer;
+        this.loadingText = loadingText;
+    }
+
+    interface Resolver {
+        String resolve(UUID uuid);
+    }
+
+    Resolver get(String identifier) {
+        Resolver resolver = resolvers.get(identifier);
+        if (resolver != null) {
+            return resolver;
+        }
+
+        resolver = compile(identifier);
+        // Identifiers come from scoreboards and menus, so they are few. The cap only guards against junk input.
+        if (resolvers.size() < MAX_CACHED_IDENTIFIERS) {
+            resolvers.put(identifier, resolver);
+        }
+        return resolver;
+    }
+
+    /**
+     * @return the cached text for small numbers, so the hot path does not allocate a new String
+     */
+    static String text(int value) {
+        return value >= 0 && value < CACHED_NUMBERS ? NUMBERS[value] : String.valueOf(value);
+    }
+
+    private Resolver compile(String identifier) {
+        // Ranks come from the in-memory leaderboards, only these two need the player's stats loaded.
+        if (identifier.equals("total_wins")) {
+            return uuid -> {
+                PlayerStats stats = statsWarmer.get(uuid);
+                return stats != null ? text(stats.getTotalWins()) : loadingText;
+            };
+        }
+
+        if (identifier.startsWith("wins_")) {
+            String kothName = identifier.substring(5);
+            return uuid -> {
+                PlayerStats stats = statsWarmer.get(uuid);
+                return stats != null ? text(stats.getWins(kothName)) : loadingText;
+            };
+        }
+
+        if (identifier.startsWith("top_")) {
+            return compileTop(identifier);
+        }
+
+        for (TimeWindow window : TimeWindow.values()) {
+            String prefix = window.getKey() + "_";
+            if (identifier.startsWith(prefix)) {
+                return compileWindow(kothDataCache.getWindowLeaderboard(window), identifier.substring(prefix.length()));
+            }
+        }
+
+        if (identifier.equals("rank")) {
+            return uuid -> text(kothDataCache.getRank(uuid));
+        }
+
+        if (identifier.startsWith("rank_")) {
+            String kothName = identifier.substring(5);
+            return uuid -> text(kothDataCache.getKothRank(uuid, kothName));
+        }
+
+        return UNKNOWN;
+    }
+
+    /**
+     * Format: <window>_total_wins, <window>_rank or <window>_top_<position>_<field>
+     */
+    private Resolver compileWindow(Leaderboard leaderboard, String identifier) {
+        if (identifier.equals("total_wins")) {
+            return uuid -> text(leaderboard.getWins(uuid));
+        }
+
+        if (identifier.equals("rank")) {
+            return uuid -> text(leaderboard.getRank(uuid));
+        }
+
+        if (identifier.startsWith("top_")) {
+            int separator = identifier.indexOf('_', 4);
+            if (separator < 0) {
+                return ZERO;
+            }
+
+            int position;
+            try {
+                position = Integer.parseInt(identifier.substring(4, separator));
+            } catch (NumberFormatException e) {
+                return ZERO;
+            }
+            Field field = Field.of(identifier.substring(separator + 1));
+            return uuid -> field.format(leaderboard.getTop(position));
+        }
+
+        return UNKNOWN;
+    }
+
+    /**
+     * Format: top_<position>_<field> or top_<koth>_<position>_<field>
+     */
+    private Resolver compileTop(String identifier) {
+        int fieldSeparator = identifier.lastIndexOf('_');
+        int positionSeparator = identifier.lastIndexOf('_', fieldSeparator - 1);
+        if (fieldSeparator <= 4 || positionSeparator < 3) {
+            return ZERO;
+        }
+
+        int position;
+        try {
+            position = Integer.parseInt(identifier.substring(positionSeparator + 1, fieldSeparator));
+        } catch (NumberFormatException e) {
+            return ZERO;
+        }
+        Field field = Field.of(identifier.substring(fieldSeparator + 1));
+
+        if (positionSeparator == 3) {
+            return uuid -> field.format(kothDataCache.getTopPlayer(position));
+        }
+
+        // The KotH leaderboard is looked up on every call, it only exists once somebody has won that KotH.
+        String kothName = identifier.substring(4, positionSeparator);
+        return uuid -> {
+            Leaderboard leaderboard = kothDataCache.getKothLeaderboard(kothName);
+            return field.format(leaderboard != null ? leaderboard.getTop(position) : null);
+        };
+    }
+
+    private enum Field {
+        NAME, WINS, UNKNOWN;
+
+        static Field of(String name) {
+            switch (name) {
+                case "name":
+                    return NAME;
+                case "wins":
+                    return WINS;
+                default:
+                    return UNKNOWN;
+            }
+        }
+
+        String format(SortedPlayer player) {
+            if (player == null) {
+                return this == NAME ? NO_PLAYER : "0";
+            }
+            switch (this) {
+                case NAME:
+                    return player.getName();
+                case WINS:
+                    return player.getTotalWinsText();
+                default:
+                    return "0";
+            }
+        }
+    }
+}
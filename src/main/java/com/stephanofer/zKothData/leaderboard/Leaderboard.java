@@ -0,0 +1,204 @@
+package com.stephanofer.zKothData.leaderboard;
+
+import com.stephanofer.zKothData.models.SortedPlayer;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * In-memory ranking of players by wins.
+ * Ordered by wins descending with the UUID as a stable tiebreak, so every update is a remove plus an insert
+ * in the sorted set (O(log n)) instead of a GROUP BY over the whole stats table.
+ * Writers are serialized on this object. The placeholder reads never wait for them: the top is a published
+ * array, wins come from a concurrent map and ranks are read optimistically, retried under a read lock only
+ * if a write raced with them.
+ */
+public class Leaderboard {
+
+    private static final Comparator<SortedPlayer> ORDER = (a, b) -> {
+        int byWins = Integer.compare(b.getTotalWins(), a.getTotalWins());
+        return byWins != 0 ? byWins : a.getUuid().compareTo(b.getUuid());
+    };
+
+    private static final SortedPlayer[] EMPTY = new SortedPlayer[0];
+
+    private final NavigableSet<SortedPlayer> ranking = new TreeSet<>(ORDER);
+    private final Map<UUID, SortedPlayer> entries = new ConcurrentHashMap<>();
+    private final RankIndex rankIndex = new RankIndex();
+    /** Guards entries and rankIndex as a pair, so a rank is never computed between the two updates. */
+    private final StampedLock rankLock = new StampedLock();
+    private final int snapshotSize;
+
+    /** Top entries republished after every change that reaches them, read without locking. */
+    private volatile SortedPlayer[] topSnapshot = EMPTY;
+
+    public Leaderboard(int snapshotSize) {
+        this.snapshotSize = snapshotSize;
+    }
+
+    /**
+     * Replaces the whole ranking with the given players.
+     */
+    public synchronized void load(Collection<SortedPlayer> players) {
+        ranking.clear();
+        long stamp = rankLock.writeLock();
+        try {
+            entries.clear();
+            rankIndex.clear();
+        } finally {
+            rankLock.unlockWrite(stamp);
+        }
+        for (SortedPlayer player : players) {
+            put(player);
+        }
+        publish();
+    }
+
+    /**
+     * Merges counts read from the database. A count is never lowered, since wins still waiting
+     * in the write-behind queue are already applied here but not yet visible in the database.
+     */
+    public synchronized void reconcile(Collection<SortedPlayer> players) {
+        for (SortedPlayer player : players) {
+            SortedPlayer current = entries.get(player.getUuid());
+            if (current == null || current.getTotalWins() < player.getTotalWins()) {
+                put(player);
+            }
+        }
+        publish();
+    }
+
+    /**
+     * Same as {@link #reconcile(Collection)} for a single player, without republishing the top entries.
+     * Meant for streaming many rows, call {@link #publishTop()} once done.
+     */
+    public synchronized void merge(SortedPlayer player) {
+        SortedPlayer current = entries.get(player.getUuid());
+        if (current == null || current.getTotalWins() < player.getTotalWins()) {
+            put(player);
+        }
+    }
+
+    public synchronized void publishTop() {
+        publish();
+    }
+
+    public synchronized void increment(UUID uuid, String name, int delta) {
+        SortedPlayer current = entries.get(uuid);
+        int wins = current != null ? current.getTotalWins() + delta : delta;
+        String playerName = name != null ? name : current != null ? current.getName() : uuid.toString();
+        SortedPlayer updated = new SortedPlayer(uuid, playerName, wins);
+        put(updated);
+        if (touchesTop(current, updated)) {
+            publish();
+        }
+    }
+
+    /**
+     * @return true if the player was or is now in the published top, so the snapshot must be rebuilt
+     */
+    private boolean touchesTop(SortedPlayer previous, SortedPlayer updated) {
+        SortedPlayer[] snapshot = topSnapshot;
+        if (snapshot.length < snapshotSize) {
+            return true;
+        }
+        if (snapshot.length == 0) {
+            return false;
+        }
+        SortedPlayer last = snapshot[snapshot.length - 1];
+        return (previous != null && ORDER.compare(previous, last) <= 0) || ORDER.compare(updated, last) <= 0;
+    }
+
+    private void put(SortedPlayer player) {
+        long stamp = rankLock.writeLock();
+        try {
+            SortedPlayer previous = entries.put(player.getUuid(), player);
+            if (previous != null) {
+                ranking.remove(previous);
+                rankIndex.remove(previous.getTotalWins());
+            }
+            if (player.getTotalWins() > 0) {
+                ranking.add(player);
+                rankIndex.add(player.getTotalWins());
+            } else {
+                entries.remove(player.getUuid());
+            }
+        } finally {
+            rankLock.unlockWrite(stamp);
+        }
+    }
+
+    private void publish() {
+        SortedPlayer[] snapshot = new SortedPlayer[Math.min(snapshotSize, ranking.size())];
+        Iterator<SortedPlayer> iterator = ranking.iterator();
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = iterator.next();
+        }
+        topSnapshot = snapshot;
+    }
+
+    /**
+     * Lock-free read of the published top entries.
+     * @param position 1-based position
+     * @return the player at that position, or null if there is none
+     */
+    public SortedPlayer getTop(int position) {
+        SortedPlayer[] snapshot = topSnapshot;
+        return position > 0 && position <= snapshot.length ? snapshot[position - 1] : null;
+    }
+
+    public synchronized List<SortedPlayer> top(int limit) {
+        List<SortedPlayer> result = new ArrayList<>(Math.min(limit, ranking.size()));
+        for (SortedPlayer player : ranking) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(player);
+        }
+        return result;
+    }
+
+    /**
+     * Competition rank of the player: one plus the number of players with more wins, so ties share a rank.
+     * @return the 1-based rank, or 0 if the player has no wins
+     */
+    public int getRank(UUID uuid) {
+        long stamp = rankLock.tryOptimisticRead();
+        int rank = rankOf(uuid);
+        if (!rankLock.validate(stamp)) {
+            stamp = rankLock.readLock();
+            try {
+                rank = rankOf(uuid);
+            } finally {
+                rankLock.unlockRead(stamp);
+            }
+        }
+        return rank;
+    }
+
+    private int rankOf(UUID uuid) {
+        SortedPlayer player = entries.get(uuid);
+        return player != null ? rankIndex.countGreaterThan(player.getTotalWins()) + 1 : 0;
+    }
+
+    /**
+     * Lock-free read of the player's entry.
+     * @return the player with their current count and name, or null if they have no wins
+     */
+    public SortedPlayer get(UUID uuid) {
+        return entries.get(uuid);
+    }
+
+    /**
+     * Lock-free read of the player's current count.
+     */
+    public int getWins(UUID uuid) {
+        SortedPlayer player = entries.get(uuid);
+        return player != null ? player.getTotalWins() : 0;
+    }
+
+    public synchronized int size() {
+        return ranking.size();
+    }
+}
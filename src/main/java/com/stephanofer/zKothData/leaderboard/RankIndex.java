@@ -0,0 +1,90 @@
+package com.stephanofer.zKothData.leaderboard;
+
+/**
+ * Fenwick tree over win counts: how many players have exactly N wins.
+ * Answers "how many players have more wins than X" in O(log maxWins), which is the player's rank minus one.
+ * Written under the owning {@link Leaderboard}'s lock. Reads may be optimistic, so a read never assumes
+ * that two loads of the tree see the same array.
+ */
+class RankIndex {
+
+    private long[] tree;
+    private int players;
+
+    RankIndex() {
+        this.tree = new long[65];
+    }
+
+    void clear() {
+        tree = new long[65];
+        players = 0;
+    }
+
+    void add(int wins) {
+        if (wins > 0) {
+            update(wins, 1);
+            players++;
+        }
+    }
+
+    void remove(int wins) {
+        if (wins > 0) {
+            update(wins, -1);
+            players--;
+        }
+    }
+
+    /**
+     * @return number of players with strictly more wins than the given amount
+     */
+    int countGreaterThan(int wins) {
+        long[] current = tree;
+        return (int) (players - prefixOf(current, Math.min(wins, current.length - 1)));
+    }
+
+    int size() {
+        return players;
+    }
+
+    private int capacity() {
+        return tree.length - 1;
+    }
+
+    private void update(int wins, long delta) {
+        if (wins > capacity()) {
+            grow(wins);
+        }
+        for (int i = wins; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private void grow(int wins) {
+        int capacity = capacity();
+        while (capacity < wins) {
+            capacity <<= 1;
+        }
+
+        long[] old = tree;
+        tree = new long[capacity + 1];
+        long previous = 0;
+        for (int i = 1; i < old.length; i++) {
+            long current = prefixOf(old, i);
+            long count = current - previous;
+            previous = current;
+            if (count != 0) {
+                for (int j = i; j < tree.length; j += j & -j) {
+                    tree[j] += count;
+                }
+            }
+        }
+    }
+
+    private static long prefixOf(long[] tree, int index) {
+        long sum = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+}
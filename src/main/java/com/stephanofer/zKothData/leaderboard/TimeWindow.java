@@ -0,0 +1,41 @@
+package com.stephanofer.zKothData.leaderboard;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+
+public enum TimeWindow {
+    DAILY("daily"),
+    WEEKLY("weekly"),
+    MONTHLY("monthly"),
+    SEASON("season");
+
+    private final String key;
+
+    TimeWindow(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Placeholder prefix of this window, e.g. "weekly".
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * First day (inclusive) of the window that contains the given day.
+     */
+    public LocalDate start(LocalDate today, LocalDate seasonStart) {
+        switch (this) {
+            case DAILY:
+                return today;
+            case WEEKLY:
+                return today.with(DayOfWeek.MONDAY);
+            case MONTHLY:
+                return today.withDayOfMonth(1);
+            case SEASON:
+            default:
+                return seasonStart;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.stephanofer.zKothData.leaderboard;
+
+import com.stephanofer.zKothData.models.SortedPlayer;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * One leaderboard per {@link TimeWindow}. A board is emptied when its window rolls over,
+ * so the counters only ever hold the wins of the current day, week, month or season.
+ */
+public class WindowedLeaderboards {
+
+    /** Season start used when none is configured: the season then covers every win ever recorded. */
+    public static final LocalDate UNBOUNDED_SEASON = LocalDate.of(1970, 1, 1);
+
+    private final Map<TimeWindow, Leaderboard> boards = new EnumMap<>(TimeWindow.class);
+    private final Map<TimeWindow, LocalDate> starts = new EnumMap<>(TimeWindow.class);
+    private LocalDate seasonStart;
+
+    public WindowedLeaderboards(int snapshotSize, LocalDate seasonStart, LocalDate today) {
+        this.seasonStart = seasonStart;
+        for (TimeWindow window : TimeWindow.values()) {
+            boards.put(window, new Leaderboard(snapshotSize));
+            starts.put(window, window.start(today, seasonStart));
+        }
+    }
+
+    /**
+     * Empties every board whose window no longer contains the given day.
+     */
+    public synchronized void rollover(LocalDate today) {
+        for (TimeWindow window : TimeWindow.values()) {
+            LocalDate start = window.start(today, seasonStart);
+            if (start.isAfter(starts.get(window))) {
+                starts.put(window, start);
+                boards.get(window).load(Collections.emptyList());
+            }
+        }
+    }
+
+    public synchronized void startSeason(LocalDate start) {
+        seasonStart = start;
+        starts.put(TimeWindow.SEASON, start);
+        boards.get(TimeWindow.SEASON).load(Collections.emptyList());
+    }
+
+    public synchronized void increment(UUID uuid, String name, LocalDate day) {
+        rollover(day);
+        for (TimeWindow window : TimeWindow.values()) {
+            if (!day.isBefore(starts.get(window))) {
+                boards.get(window).increment(uuid, name, 1);
+            }
+        }
+    }
+
+    /**
+     * Merges totals read from the daily buckets, as long as the window did not roll over meanwhile.
+     */
+    public synchronized void reconcile(TimeWindow window, LocalDate start, List<SortedPlayer> players) {
+        if (start.equals(starts.get(window))) {
+            boards.get(window).reconcile(players);
+        }
+    }
+
+    public synchronized LocalDate getStart(TimeWindow window) {
+        return starts.get(window);
+    }
+
+    public synchronized LocalDate getSeasonStart() {
+        return seasonStart;
+    }
+
+    public synchronized boolean isSeasonUnbounded() {
+        return seasonStart.equals(UNBOUNDED_SEASON);
+    }
+
+    public Leaderboard get(TimeWindow window) {
+        return boards.get(window);
+    }
+}
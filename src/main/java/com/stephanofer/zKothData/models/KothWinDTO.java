@@ -11,10 +11,14 @@ public class KothWinDTO {
     private final LocalDateTime winTime;
 
     public KothWinDTO(UUID playerUuid, String playerName, String kothName) {
+        this(playerUuid, playerName, kothName, LocalDateTime.now());
+    }
+
+    public KothWinDTO(UUID playerUuid, String playerName, String kothName, LocalDateTime winTime) {
         this.playerUuid = playerUuid;
         this.playerName = playerName;
         this.kothName = kothName;
-        this.winTime = LocalDateTime.now();
+        this.winTime = winTime;
     }
 
     public UUID getPlayerUuid() {
@@ -0,0 +1,72 @@
+package com.stephanofer.zKothData.models;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of a player's wins per KotH. A win produces a new snapshot instead of
+ * changing this one, so readers never need a lock and never see a half-applied update.
+ */
+public final class PlayerStats {
+
+    public static final PlayerStats EMPTY = new PlayerStats(Collections.emptyMap(), 0, 0);
+
+    private final Map<String, Integer> winsByKoth;
+    private final int totalWins;
+    /** Newest of this server's queued wins the snapshot contains, see UnwrittenWins. */
+    private final long queuedSeq;
+
+    private PlayerStats(Map<String, Integer> winsByKoth, int totalWins, long queuedSeq) {
+        this.winsByKoth = winsByKoth;
+        this.totalWins = totalWins;
+        this.queuedSeq = queuedSeq;
+    }
+
+    public static PlayerStats of(Map<String, Integer> winsByKoth) {
+        return of(winsByKoth, 0);
+    }
+
+    public static PlayerStats of(Map<String, Integer> winsByKoth, long queuedSeq) {
+        if (winsByKoth.isEmpty()) {
+            return queuedSeq == 0 ? EMPTY : new PlayerStats(Collections.emptyMap(), 0, queuedSeq);
+        }
+        int total = 0;
+        for (int wins : winsByKoth.values()) {
+            total += wins;
+        }
+        return new PlayerStats(Collections.unmodifiableMap(new HashMap<>(winsByKoth)), total, queuedSeq);
+    }
+
+    public PlayerStats withWin(String kothName) {
+        return withQueuedWin(kothName, queuedSeq);
+    }
+
+    /**
+     * @param seq sequence of the queued win, the snapshot contains every queued win up to it
+     */
+    public PlayerStats withQueuedWin(String kothName, long seq) {
+        Map<String, Integer> copy = new HashMap<>(winsByKoth);
+        copy.merge(kothName, 1, Integer::sum);
+        return new PlayerStats(Collections.unmodifiableMap(copy), totalWins + 1, seq);
+    }
+
+    public int getWins(String kothName) {
+        return winsByKoth.getOrDefault(kothName, 0);
+    }
+
+    public int getTotalWins() {
+        return totalWins;
+    }
+
+    public long getQueuedSeq() {
+        return queuedSeq;
+    }
+
+    /**
+     * @return read-only view of the wins per KotH
+     */
+    public Map<String, Integer> asMap() {
+        return winsByKoth;
+    }
+}
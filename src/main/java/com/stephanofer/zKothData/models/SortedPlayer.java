@@ -8,6 +8,7 @@ public class SortedPlayer {
     private final UUID uuid;
     private final String name;
     private final int totalWins;
+    private String totalWinsText;
 
     public SortedPlayer(UUID uuid, String name, int totalWins) {
         this.uuid = uuid;
@@ -26,4 +27,13 @@ public class SortedPlayer {
     public int getTotalWins() {
         return totalWins;
     }
+
+    public String getTotalWinsText() {
+        String text = totalWinsText;
+        if (text == null) {
+            text = String.valueOf(totalWins);
+            totalWinsText = text;
+        }
+        return text;
+    }
 }
@@ -0,0 +1,136 @@
+package com.stephanofer.zKothData.sync;
+
+import com.google.common.collect.Iterables;
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.stephanofer.zKothData.ZKothData;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.messaging.PluginMessageListener;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Sends wins through the proxy with the BungeeCord Forward message, which Velocity also understands.
+ * Plugin messages travel over a player connection: a server without players online can neither send nor
+ * receive, and those wins only show up there with the next leaderboard reconcile.
+ * Messages carry no id and may arrive before or after the origin commits the win, so a snapshot loaded shortly
+ * before one arrives cannot tell whether it has the win and is loaded again instead.
+ */
+public class PluginMessageTransport implements WinEventTransport, PluginMessageListener {
+
+    private static final String CHANNEL = "BungeeCord";
+    private static final String SUBCHANNEL = "zKothData";
+    private static final byte VERSION = 1;
+    /** How long after a snapshot is read a message may still be about a win it already has. */
+    private static final long SNAPSHOT_UNCERTAINTY_MILLIS = 5000L;
+
+    private final ZKothData plugin;
+    private Consumer<WinEvent> listener;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public PluginMessageTransport(ZKothData plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void start(Consumer<WinEvent> listener) {
+        this.listener = listener;
+        plugin.getServer().getMessenger().registerOutgoingPluginChannel(plugin, CHANNEL);
+        plugin.getServer().getMessenger().registerIncomingPluginChannel(plugin, CHANNEL, this);
+    }
+
+    @Override
+    public void publish(WinEvent event) {
+        byte[] payload = encode(event);
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            Player carrier = Iterables.getFirst(plugin.getServer().getOnlinePlayers(), null);
+            if (carrier == null) {
+                dropped.increment();
+                return;
+            }
+
+            ByteArrayDataOutput out = ByteStreams.newDataOutput();
+            out.writeUTF("Forward");
+            out.writeUTF("ALL");
+            out.writeUTF(SUBCHANNEL);
+            out.writeShort(payload.length);
+            out.write(payload);
+            carrier.sendPluginMessage(plugin, CHANNEL, out.toByteArray());
+            sent.increment();
+        });
+    }
+
+    @Override
+    public void onPluginMessageReceived(@NotNull String channel, @NotNull Player player, @NotNull byte[] message) {
+        if (!CHANNEL.equals(channel) || listener == null) {
+            return;
+        }
+        ByteArrayDataInput in = ByteStreams.newDataInput(message);
+        if (!SUBCHANNEL.equals(in.readUTF())) {
+            return;
+        }
+        byte[] payload = new byte[in.readShort()];
+        in.readFully(payload);
+
+        try {
+            WinEvent event = decode(payload);
+            if (event != null) {
+                // Off the main thread: applying a win waits for any stats load in progress.
+                plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> listener.accept(event));
+            }
+        } catch (RuntimeException ex) {
+            plugin.getLogger().log(Level.WARNING, "Mensaje de sincronización inválido recibido del proxy", ex);
+        }
+    }
+
+    private static byte[] encode(WinEvent event) {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeByte(VERSION);
+        out.writeLong(event.getOrigin().getMostSignificantBits());
+        out.writeLong(event.getOrigin().getLeastSignificantBits());
+        out.writeLong(event.getPlayerUuid().getMostSignificantBits());
+        out.writeLong(event.getPlayerUuid().getLeastSignificantBits());
+        out.writeUTF(event.getPlayerName());
+        out.writeUTF(event.getKothName());
+        out.writeLong(event.getDay().toEpochDay());
+        return out.toByteArray();
+    }
+
+    private static WinEvent decode(byte[] payload) {
+        ByteArrayDataInput in = ByteStreams.newDataInput(payload);
+        if (in.readByte() != VERSION) {
+            return null;
+        }
+        UUID origin = new UUID(in.readLong(), in.readLong());
+        UUID playerUuid = new UUID(in.readLong(), in.readLong());
+        String playerName = in.readUTF();
+        String kothName = in.readUTF();
+        LocalDate day = LocalDate.ofEpochDay(in.readLong());
+        return new WinEvent(origin, playerUuid, playerName, kothName, day);
+    }
+
+    @Override
+    public SnapshotMark markSnapshot(Connection connection, long position) {
+        return SnapshotMark.unknownUntil(System.currentTimeMillis() + SNAPSHOT_UNCERTAINTY_MILLIS);
+    }
+
+    @Override
+    public void close() {
+        plugin.getServer().getMessenger().unregisterIncomingPluginChannel(plugin, CHANNEL, this);
+        plugin.getServer().getMessenger().unregisterOutgoingPluginChannel(plugin, CHANNEL);
+    }
+
+    @Override
+    public String describe() {
+        return "plugin-message, sent=" + sent.sum() + ", dropped without players=" + dropped.sum();
+    }
+}
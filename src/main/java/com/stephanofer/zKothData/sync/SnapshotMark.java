@@ -0,0 +1,63 @@
+package com.stephanofer.zKothData.sync;
+
+import java.util.Arrays;
+
+/**
+ * Which {@link WinEvent}s a stats snapshot read from the database already contains, so an event delivered
+ * after the snapshot was cached is not counted a second time.
+ */
+public final class SnapshotMark {
+
+    public enum Coverage {
+        /** The snapshot has the win, applying it again would count it twice. */
+        INCLUDED,
+        /** The snapshot was read before the win was written, it needs the increment. */
+        MISSING,
+        /** The transport cannot tell, the snapshot must be loaded again. */
+        UNKNOWN
+    }
+
+    private final long position;
+    private final long[] included;
+    private final long unknownUntil;
+
+    private SnapshotMark(long position, long[] included, long unknownUntil) {
+        this.position = position;
+        this.included = included;
+        this.unknownUntil = unknownUntil;
+    }
+
+    /**
+     * @param position every event up to this id is in the snapshot
+     * @param included ids above the position the snapshot also has, in ascending order
+     */
+    public static SnapshotMark ofEvents(long position, long[] included) {
+        return new SnapshotMark(position, included, 0);
+    }
+
+    /**
+     * For transports without event ids: events delivered before the given time may or may not be in the snapshot.
+     */
+    public static SnapshotMark unknownUntil(long epochMillis) {
+        return new SnapshotMark(0, new long[0], epochMillis);
+    }
+
+    /**
+     * @param eventId id of the event, 0 if the transport has none
+     */
+    public Coverage coverage(long eventId, long now) {
+        if (eventId <= 0) {
+            return now < unknownUntil ? Coverage.UNKNOWN : Coverage.MISSING;
+        }
+        return eventId <= position || Arrays.binarySearch(included, eventId) >= 0 ? Coverage.INCLUDED : Coverage.MISSING;
+    }
+
+    /**
+     * @param delivered highest event id delivered so far
+     * @return true once every later event is {@link Coverage#MISSING}, so the mark can be dropped
+     */
+    public boolean isSettled(long delivered, long now) {
+        long horizon = included.length > 0 ? Math.max(position, included[included.length - 1]) : position;
+        return now >= unknownUntil && delivered >= horizon;
+    }
+}
@@ -0,0 +1,62 @@
+package com.stephanofer.zKothData.sync;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * A KotH win announced by one server to the others sharing the same database.
+ */
+public final class WinEvent {
+
+    private final long id;
+    private final UUID origin;
+    private final UUID playerUuid;
+    private final String playerName;
+    private final String kothName;
+    private final LocalDate day;
+
+    public WinEvent(UUID origin, UUID playerUuid, String playerName, String kothName, LocalDate day) {
+        this(0, origin, playerUuid, playerName, kothName, day);
+    }
+
+    /**
+     * @param id increasing id assigned by the transport, 0 if it has none
+     */
+    public WinEvent(long id, UUID origin, UUID playerUuid, String playerName, String kothName, LocalDate day) {
+        this.id = id;
+        this.origin = origin;
+        this.playerUuid = playerUuid;
+        this.playerName = playerName;
+        this.kothName = kothName;
+        this.day = day;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public UUID getOrigin() {
+        return origin;
+    }
+
+    public UUID getPlayerUuid() {
+        return playerUuid;
+    }
+
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    public String getKothName() {
+        return kothName;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    @Override
+    public String toString() {
+        return "WinEvent{id=" + id + ", origin=" + origin + ", player=" + playerName + ", koth=" + kothName + ", day=" + day + "}";
+    }
+}
@@ -0,0 +1,87 @@
+package com.stephanofer.zKothData.sync;
+
+import com.stephanofer.zKothData.KothDataCache;
+import com.stephanofer.zKothData.ZKothData;
+import com.stephanofer.zKothData.models.KothWinDTO;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the caches of the servers sharing one database in step. Every win is announced through the
+ * transport, and wins from other servers are applied to the in-memory stats and leaderboards as
+ * increments, without reading anything back from the database. Snapshots loaded while events were in flight
+ * carry a {@link SnapshotMark}, so a win they already contain is not added again.
+ */
+public class WinEventBus {
+
+    private final ZKothData plugin;
+    private final KothDataCache kothDataCache;
+    private final UUID serverId;
+    private final WinEventTransport transport;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder ownEvents = new LongAdder();
+
+    public WinEventBus(ZKothData plugin, KothDataCache kothDataCache, UUID serverId, WinEventTransport transport) {
+        this.plugin = plugin;
+        this.kothDataCache = kothDataCache;
+        this.serverId = serverId;
+        this.transport = transport;
+    }
+
+    public void start() {
+        transport.start(this::receive);
+    }
+
+    public void publish(KothWinDTO win) {
+        published.increment();
+        transport.publish(new WinEvent(serverId, win.getPlayerUuid(), win.getPlayerName(), win.getKothName(),
+                win.getWinTime().toLocalDate()));
+    }
+
+    private void receive(WinEvent event) {
+        if (serverId.equals(event.getOrigin())) {
+            // Already counted when the win happened here.
+            ownEvents.increment();
+            kothDataCache.eventDelivered(event.getId());
+            return;
+        }
+        kothDataCache.applyRemoteWin(event.getId(), event.getPlayerUuid(), event.getPlayerName(), event.getKothName(),
+                event.getDay());
+        applied.increment();
+        if (plugin.getConfig().getBoolean("debug", false)) {
+            plugin.getLogger().info("[Sync] Applied " + event);
+        }
+    }
+
+    /**
+     * @see WinEventTransport#position()
+     */
+    public long position() {
+        return transport.position();
+    }
+
+    /**
+     * @see WinEventTransport#markSnapshot(Connection, long)
+     */
+    public SnapshotMark markSnapshot(Connection connection, long position) throws SQLException {
+        return transport.markSnapshot(connection, position);
+    }
+
+    public void close() {
+        transport.close();
+    }
+
+    public UUID getServerId() {
+        return serverId;
+    }
+
+    public String describe() {
+        return transport.describe() + ", published=" + published.sum() + ", applied=" + applied.sum() +
+                ", own=" + ownEvents.sum();
+    }
+}
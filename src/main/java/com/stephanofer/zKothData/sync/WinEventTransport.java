@@ -0,0 +1,43 @@
+package com.stephanofer.zKothData.sync;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * Carries {@link WinEvent}s between the servers of a network.
+ */
+public interface WinEventTransport {
+
+    /**
+     * Starts delivering the events of every server to the listener, possibly from another thread.
+     */
+    void start(Consumer<WinEvent> listener);
+
+    /**
+     * Announces a win of this server. Transports that publish from the win transaction itself ignore it.
+     */
+    void publish(WinEvent event);
+
+    /**
+     * @return the position to hand to {@link #markSnapshot}, taken before a stats snapshot is read
+     */
+    default long position() {
+        return 0;
+    }
+
+    /**
+     * Tells which events the stats snapshot just read already contains. Runs on the connection and transaction
+     * that read the snapshot.
+     *
+     * @param position the {@link #position()} taken before the snapshot was read
+     */
+    SnapshotMark markSnapshot(Connection connection, long position) throws SQLException;
+
+    void close();
+
+    /**
+     * @return name and counters for reports
+     */
+    String describe();
+}
@@ -0,0 +1,269 @@
+package com.stephanofer.zKothData;
+
+import com.stephanofer.zKothData.database.DatabaseConnector;
+import com.stephanofer.zKothData.database.DatabaseManager;
+import com.stephanofer.zKothData.database.StorageType;
+import org.bukkit.Server;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginLoader;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the plugin outside a server, for the tests, the load harness and the benchmarks.
+ * Bukkit's server, scheduler and plugin manager are dynamic proxies: async tasks run on a real thread pool
+ * with 50ms ticks, there is no main thread and no player is online. The storage defaults to a local H2 file
+ * in the data folder. The plugin itself is set up by reflection, the way Bukkit's plugin class loader would,
+ * so it needs no entry point of its own for this.
+ */
+public final class TestServer implements AutoCloseable {
+
+    private static final long TICK_MILLIS = 50L;
+
+    private final Logger logger = Logger.getLogger("zKoth-Data");
+    private final ScheduledExecutorService scheduler;
+    private final AtomicInteger taskIds = new AtomicInteger();
+    private final ZKothData plugin;
+    private DatabaseManager databaseManager;
+
+    private TestServer(File dataFolder) {
+        AtomicInteger threads = new AtomicInteger();
+        this.scheduler = Executors.newScheduledThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable, "Test Scheduler Thread - " + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Server server = proxy(Server.class, this::server);
+        this.plugin = newPlugin(server, dataFolder);
+        plugin.saveDefaultConfig();
+        plugin.reloadConfig();
+        plugin.getConfig().set("database.type", "h2");
+    }
+
+    /**
+     * @param dataFolder empty folder for config.yml, the journal and the H2 file
+     */
+    public static TestServer start(File dataFolder) {
+        return new TestServer(dataFolder);
+    }
+
+    public ZKothData getPlugin() {
+        return plugin;
+    }
+
+    /**
+     * Builds the {@link DatabaseManager} from the current config, as onEnable does, and waits for the warm-up.
+     */
+    public DatabaseManager startDatabase() throws InterruptedException {
+        return awaitWarm(new DatabaseManager(plugin));
+    }
+
+    /**
+     * Same as {@link #startDatabase()}, with the primary connector wrapped by the given decorator, for example to
+     * count round trips. There is no read replica.
+     */
+    public DatabaseManager startDatabase(UnaryOperator<DatabaseConnector> decorator) throws InterruptedException {
+        StorageType storageType = StorageType.parse(plugin.getConfig().getString("database.type"), StorageType.H2);
+        return awaitWarm(new DatabaseManager(plugin, storageType,
+                decorator.apply(DatabaseManager.createConnector(plugin, storageType))));
+    }
+
+    private DatabaseManager awaitWarm(DatabaseManager manager) throws InterruptedException {
+        databaseManager = manager;
+        setDatabaseManager(manager);
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (!databaseManager.getKothDataCache().isWarm()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("The database did not finish loading in 30s");
+            }
+            Thread.sleep(10);
+        }
+        return databaseManager;
+    }
+
+    /**
+     * Closes the database like onDisable, flushing every pending write. It can be started again afterwards.
+     */
+    public void stopDatabase() {
+        if (databaseManager != null) {
+            databaseManager.close();
+            databaseManager = null;
+            setDatabaseManager(null);
+        }
+    }
+
+    @Override
+    public void close() {
+        stopDatabase();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * ZKothData only has the constructor Bukkit's plugin class loader calls, and JavaPlugin rejects any other
+     * class loader there. The instance is allocated without running it and initialized with JavaPlugin.init,
+     * which is what that class loader does next.
+     */
+    private static ZKothData newPlugin(Server server, File dataFolder) {
+        try {
+            Field unsafeField = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+            Object unsafe = unsafeField.get(null);
+            ZKothData plugin = ZKothData.class.cast(unsafe.getClass().getMethod("allocateInstance", Class.class)
+                    .invoke(unsafe, ZKothData.class));
+
+            Method init = JavaPlugin.class.getDeclaredMethod("init", PluginLoader.class, Server.class,
+                    PluginDescriptionFile.class, File.class, File.class, ClassLoader.class);
+            init.setAccessible(true);
+            init.invoke(plugin, new JavaPluginLoader(server), server,
+                    new PluginDescriptionFile("zKoth-Data", "test", ZKothData.class.getName()),
+                    dataFolder, new File(dataFolder, "zKoth-Data.jar"), ZKothData.class.getClassLoader());
+            return plugin;
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Could not set up the plugin outside a server", ex);
+        }
+    }
+
+    /**
+     * Stands in for onEnable, which creates the DatabaseManager the placeholders and commands get from the plugin.
+     */
+    private void setDatabaseManager(DatabaseManager manager) {
+        try {
+            Field field = ZKothData.class.getDeclaredField("databaseManager");
+            field.setAccessible(true);
+            field.set(plugin, manager);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Could not hand the database to the plugin", ex);
+        }
+    }
+
+    private Object server(Method method, Object[] args) {
+        switch (method.getName()) {
+            case "getLogger":
+                return logger;
+            case "getScheduler":
+                return proxy(BukkitScheduler.class, this::scheduler);
+            case "getPluginManager":
+                return proxy(PluginManager.class, (m, a) -> defaultValue(m.getReturnType()));
+            case "isPrimaryThread":
+                return false;
+            default:
+                return defaultValue(method.getReturnType());
+        }
+    }
+
+    private Object scheduler(Method method, Object[] args) {
+        if (args == null || args.length < 2 || !(args[1] instanceof Runnable)) {
+            throw new UnsupportedOperationException(method.toString());
+        }
+        Runnable task = (Runnable) args[1];
+        switch (method.getName()) {
+            case "runTask":
+            case "runTaskAsynchronously":
+                return schedule(task, 0, 0);
+            case "runTaskLater":
+            case "runTaskLaterAsynchronously":
+                return schedule(task, (Long) args[2], 0);
+            case "runTaskTimer":
+            case "runTaskTimerAsynchronously":
+                return schedule(task, (Long) args[2], Math.max(1, (Long) args[3]));
+            default:
+                throw new UnsupportedOperationException(method.toString());
+        }
+    }
+
+    private BukkitTask schedule(Runnable task, long delayTicks, long periodTicks) {
+        Runnable guarded = () -> {
+            try {
+                task.run();
+            } catch (Throwable ex) {
+                // Like Bukkit, a failing task is logged and a repeating one keeps running
+                logger.log(Level.WARNING, "Task threw an exception", ex);
+            }
+        };
+        ScheduledFuture<?> future = periodTicks > 0
+                ? scheduler.scheduleAtFixedRate(guarded, delayTicks * TICK_MILLIS, periodTicks * TICK_MILLIS, TimeUnit.MILLISECONDS)
+                : scheduler.schedule(guarded, delayTicks * TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+        int taskId = taskIds.incrementAndGet();
+        return proxy(BukkitTask.class, (method, args) -> {
+            switch (method.getName()) {
+                case "cancel":
+                    future.cancel(false);
+                    return null;
+                case "isCancelled":
+                    return future.isCancelled();
+                case "getTaskId":
+                    return taskId;
+                case "getOwner":
+                    return plugin;
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private interface Handler {
+        Object invoke(Method method, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        Object proxy = Proxy.newProxyInstance(TestServer.class.getClassLoader(), new Class<?>[]{type},
+                (self, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        switch (method.getName()) {
+                            case "equals":
+                                return self == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(self);
+                            default:
+                                return type.getSimpleName() + " proxy";
+                        }
+                    }
+                    return handler.invoke(method, args);
+                });
+        return type.cast(proxy);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == void.class) {
+            return null;
+        }
+        if (type.isPrimitive()) {
+            // The zero value of any primitive, boxed as the proxy expects
+            return Array.get(Array.newInstance(type, 1), 0);
+        }
+        if (type == List.class || type == Collection.class) {
+            return Collections.emptyList();
+        }
+        if (type == Set.class) {
+            return Collections.emptySet();
+        }
+        if (type == Map.class) {
+            return Collections.emptyMap();
+        }
+        return null;
+    }
+}
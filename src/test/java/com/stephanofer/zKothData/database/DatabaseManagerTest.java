@@ -0,0 +1,311 @@
+package com.stephanofer.zKothData.database;
+
+import com.stephanofer.zKothData.KothDataCache;
+import com.stephanofer.zKothData.TestServer;
+import com.stephanofer.zKothData.leaderboard.TimeWindow;
+import com.stephanofer.zKothData.models.KothWinDTO;
+import com.stephanofer.zKothData.models.SortedPlayer;
+import com.stephanofer.zKothData.sync.SnapshotMark;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link DatabaseManager} end to end on an H2 file in MySQL mode: schema creation, write-behind wins,
+ * the bulk stats loader and the warm-up of the leaderboards after a restart.
+ */
+class DatabaseManagerTest {
+
+    private static final Pattern OPERATION_COUNT = Pattern.compile("^(\\S+)\\s+\\| n=(\\d+)");
+
+    @TempDir
+    File dataFolder;
+
+    private TestServer server;
+
+    @BeforeEach
+    void start() {
+        server = TestServer.start(dataFolder);
+        server.getPlugin().getConfig().set("database.write-behind.flush-interval", 1);
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void winsSurviveARestart() throws Exception {
+        UUID alice = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        UUID carol = UUID.randomUUID();
+
+        DatabaseManager manager = server.startDatabase();
+        manager.registerPlayerAsync(alice, "Alice");
+        manager.registerPlayerAsync(bob, "Bob");
+        awaitAll(Arrays.asList(
+                manager.registerWinAsync(new KothWinDTO(alice, "Alice", "Spawn")),
+                manager.registerWinAsync(new KothWinDTO(alice, "Alice", "Spawn")),
+                manager.registerWinAsync(new KothWinDTO(alice, "Alice", "Desert")),
+                manager.registerWinAsync(new KothWinDTO(bob, "Bob", "Spawn"))));
+        server.stopDatabase();
+
+        manager = server.startDatabase();
+        Map<UUID, Map<String, Integer>> stats = manager.queryPlayerStats(Arrays.asList(alice, bob, carol));
+        assertNotNull(stats);
+        assertEquals(Integer.valueOf(2), stats.get(alice).get("Spawn"));
+        assertEquals(Integer.valueOf(1), stats.get(alice).get("Desert"));
+        assertEquals(Integer.valueOf(1), stats.get(bob).get("Spawn"));
+        assertTrue(stats.get(carol).isEmpty());
+
+        KothDataCache cache = manager.getKothDataCache();
+        List<SortedPlayer> top = cache.getTopPlayers();
+        assertEquals(2, top.size());
+        assertEquals(alice, top.get(0).getUuid());
+        assertEquals(3, top.get(0).getTotalWins());
+
+        assertEquals(3, cache.getWindowWins(alice, TimeWindow.DAILY));
+        assertEquals(1, cache.getWindowWins(bob, TimeWindow.SEASON));
+    }
+
+    @Test
+    void missingStatsAreLoadedInBulk() throws Exception {
+        int players = 300;
+        List<UUID> uuids = new ArrayList<>();
+        DatabaseManager manager = server.startDatabase();
+        List<CompletableFuture<Boolean>> wins = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            UUID uuid = UUID.randomUUID();
+            uuids.add(uuid);
+            for (int win = 0; win <= i % 3; win++) {
+                wins.add(manager.registerWinAsync(new KothWinDTO(uuid, "Player" + i, "Arena" + (i % 4))));
+            }
+        }
+        awaitAll(wins);
+        server.stopDatabase();
+
+        // Nobody is online and nothing is warmed, so every request below is a cache miss
+        server.getPlugin().getConfig().set("database.warmup.recent-hours", 0);
+        manager = server.startDatabase();
+        List<CompletableFuture<Map<String, Integer>>> loads = new ArrayList<>();
+        for (UUID uuid : uuids) {
+            loads.add(manager.getPlayerStats(uuid));
+        }
+        for (int i = 0; i < players; i++) {
+            Map<String, Integer> stats = loads.get(i).get(10, TimeUnit.SECONDS);
+            assertEquals(Integer.valueOf(i % 3 + 1), stats.get("Arena" + (i % 4)), "player " + i);
+        }
+
+        long roundTrips = operationCount(manager.getDatabaseConnector().getQueryMetrics(), "player_stats");
+        assertTrue(roundTrips > 0 && roundTrips <= 5, "player_stats round trips: " + roundTrips);
+    }
+
+    @Test
+    void windowStatsOutsideTheTopAreLoadedWithThePlayer() throws Exception {
+        UUID alice = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        server.getPlugin().getConfig().set("cache.top-players-max-size", 1);
+
+        DatabaseManager manager = server.startDatabase();
+        awaitAll(Arrays.asList(
+                manager.registerWinAsync(new KothWinDTO(alice, "Alice", "Spawn")),
+                manager.registerWinAsync(new KothWinDTO(alice, "Alice", "Spawn")),
+                manager.registerWinAsync(new KothWinDTO(bob, "Bob", "Desert"))));
+        server.stopDatabase();
+
+        server.getPlugin().getConfig().set("database.warmup.recent-hours", 0);
+        manager = server.startDatabase();
+        KothDataCache cache = manager.getKothDataCache();
+        // Only the top player of each window is read back at startup
+        assertEquals(0, cache.getWindowWins(bob, TimeWindow.WEEKLY));
+
+        manager.getPlayerStats(bob).get(5, TimeUnit.SECONDS);
+        for (TimeWindow window : TimeWindow.values()) {
+            assertEquals(1, cache.getWindowWins(bob, window), window.getKey());
+        }
+        assertEquals(2, cache.getWindowLeaderboard(TimeWindow.DAILY).getRank(bob));
+    }
+
+    @Test
+    void incrementsOnlyTouchCachedPlayers() throws Exception {
+        UUID cached = UUID.randomUUID();
+        UUID uncached = UUID.randomUUID();
+
+        DatabaseManager manager = server.startDatabase();
+        awaitAll(Arrays.asList(
+                manager.registerWinAsync(new KothWinDTO(cached, "Cached", "Spawn")),
+                manager.registerWinAsync(new KothWinDTO(uncached, "Uncached", "Spawn"))));
+
+        KothDataCache cache = manager.getKothDataCache();
+        cache.invalidatePlayerStats(cached);
+        cache.invalidatePlayerStats(uncached);
+        assertEquals(Integer.valueOf(1), manager.getPlayerStats(cached).get(5, TimeUnit.SECONDS).get("Spawn"));
+
+        awaitAll(Arrays.asList(
+                manager.registerWinAsync(new KothWinDTO(cached, "Cached", "Spawn")),
+                manager.registerWinAsync(new KothWinDTO(uncached, "Uncached", "Spawn"))));
+
+        assertEquals(Integer.valueOf(2), cache.getPlayerStats(cached).get("Spawn"));
+        assertNull(cache.getPlayerStats(uncached));
+        assertEquals(Integer.valueOf(2), manager.getPlayerStats(uncached).get(5, TimeUnit.SECONDS).get("Spawn"));
+    }
+
+    @Test
+    void queuedWinsAreLoadedWithTheRows() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        server.getPlugin().getConfig().set("database.write-behind.flush-interval", 72000);
+        server.getPlugin().getConfig().set("database.write-behind.batch-size", 3);
+
+        DatabaseManager manager = server.startDatabase();
+        KothDataCache cache = manager.getKothDataCache();
+        List<CompletableFuture<Boolean>> wins = new ArrayList<>();
+        wins.add(manager.registerWinAsync(new KothWinDTO(uuid, "Queued", "Spawn")));
+        wins.add(manager.registerWinAsync(new KothWinDTO(uuid, "Queued", "Spawn")));
+        assertNull(cache.getPlayerStats(uuid));
+        // Neither win is in the database yet
+        assertEquals(Integer.valueOf(2), manager.getPlayerStats(uuid).get(5, TimeUnit.SECONDS).get("Spawn"));
+
+        // The third one fills the batch, once written it must not be counted again
+        wins.add(manager.registerWinAsync(new KothWinDTO(uuid, "Queued", "Spawn")));
+        assertEquals(Integer.valueOf(3), cache.getPlayerStats(uuid).get("Spawn"));
+        awaitAll(wins);
+        cache.invalidatePlayerStats(uuid);
+        assertEquals(Integer.valueOf(3), manager.getPlayerStats(uuid).get(5, TimeUnit.SECONDS).get("Spawn"));
+    }
+
+    @Test
+    void requestsShareTheQueryInFlight() throws Exception {
+        CountDownLatch queried = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DatabaseManager manager = server.startDatabase(delegate -> onStatsQuery(delegate, () -> {
+            queried.countDown();
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }));
+
+        UUID uuid = UUID.randomUUID();
+        CompletableFuture<Map<String, Integer>> first = manager.getPlayerStats(uuid);
+        assertTrue(queried.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Map<String, Integer>> second = manager.getPlayerStats(uuid);
+        assertSame(first, second);
+
+        release.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS).isEmpty());
+        assertEquals(1, operationCount(manager.getDatabaseConnector().getQueryMetrics(), "player_stats"));
+    }
+
+    @Test
+    void aFailedQueryFailsTheRequest() throws Exception {
+        DatabaseManager manager = server.startDatabase(delegate -> onStatsQuery(delegate, () -> false));
+
+        UUID uuid = UUID.randomUUID();
+        CompletableFuture<Map<String, Integer>> load = manager.getPlayerStats(uuid);
+        assertThrows(ExecutionException.class, () -> load.get(5, TimeUnit.SECONDS));
+        assertNull(manager.getKothDataCache().getPlayerStats(uuid));
+    }
+
+    @Test
+    void anUnreachableTransferTargetFailsTheTransferOnly() throws Exception {
+        DatabaseManager manager = server.startDatabase();
+        server.getPlugin().getConfig().set("database.jdbc-url", "jdbc:h2:tcp://localhost:1/unreachable");
+        server.getPlugin().getConfig().set("database.connection.timeout", 1000);
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> manager.transferTo(StorageType.MYSQL).get(10, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+        // The current backend keeps working
+        assertTrue(manager.registerWinAsync(new KothWinDTO(UUID.randomUUID(), "Player", "Spawn")).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void closingFailsStatsRequestsStillGathering() throws Exception {
+        server.getPlugin().getConfig().set("database.stats-loader.batch-window", 200);
+        DatabaseManager manager = server.startDatabase();
+        CompletableFuture<Map<String, Integer>> load = manager.getPlayerStats(UUID.randomUUID());
+        server.stopDatabase();
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> load.get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+        assertTrue(manager.getPlayerStats(UUID.randomUUID()).isCompletedExceptionally());
+    }
+
+    @Test
+    void remoteWinsAlreadyStreamedAreNotCountedAgain() throws Exception {
+        KothDataCache cache = server.startDatabase().getKothDataCache();
+        UUID alice = UUID.randomUUID();
+        LocalDate today = LocalDate.now();
+
+        KothDataCache.StatsStream stream = cache.openStatsStream(0, SnapshotMark.ofEvents(10, new long[]{12}));
+        // Delivered while the rows are read, it waits for the stream
+        cache.applyRemoteWin(11, alice, "alice", "Spawn", today);
+        stream.accept(alice, "alice", 0L, "Spawn", 3);
+        stream.finish();
+        cache.applyRemoteWin(5, alice, "alice", "Spawn", today);
+        cache.applyRemoteWin(12, alice, "alice", "Spawn", today);
+        cache.applyRemoteWin(13, alice, "alice", "Spawn", today);
+
+        // The 3 streamed wins plus events 11 and 13
+        assertEquals(5, cache.getLeaderboard().getWins(alice));
+        assertEquals(5, cache.getKothLeaderboard("Spawn").getWins(alice));
+        assertEquals(2, cache.getWindowedLeaderboards().get(TimeWindow.DAILY).getWins(alice));
+    }
+
+    private static <T> void awaitAll(List<CompletableFuture<T>> futures) throws Exception {
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        for (CompletableFuture<T> future : futures) {
+            assertNotEquals(Boolean.FALSE, future.get());
+        }
+    }
+
+    /**
+     * Runs the hook before every player_stats query, a hook returning false fails the query.
+     */
+    private static DatabaseConnector onStatsQuery(DatabaseConnector delegate, BooleanSupplier hook) {
+        return (DatabaseConnector) Proxy.newProxyInstance(DatabaseManagerTest.class.getClassLoader(),
+                new Class<?>[]{DatabaseConnector.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("connect") && args != null && args.length == 3
+                            && "player_stats".equals(args[0]) && !hook.getAsBoolean()) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(delegate, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                });
+    }
+
+    private static long operationCount(QueryMetrics metrics, String operation) {
+        for (String line : metrics.describe()) {
+            Matcher matcher = OPERATION_COUNT.matcher(line);
+            if (matcher.find() && matcher.group(1).equals(operation)) {
+                return Long.parseLong(matcher.group(2));
+            }
+        }
+        return 0;
+    }
+}
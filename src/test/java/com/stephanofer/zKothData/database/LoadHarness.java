@@ -0,0 +1,178 @@
+package com.stephanofer.zKothData.database;
+
+import com.stephanofer.zKothData.KothDataCache;
+import com.stephanofer.zKothData.TestServer;
+import com.stephanofer.zKothData.models.KothWinDTO;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives {@link DatabaseManager} with synthetic traffic and reports what a server operator would want to know
+ * before a large event: joins and wins per second, client-side p50/p99, and how close the pool came to running dry.
+ *
+ * <p>A join invalidates the player's cached stats, registers them and loads their stats again, like a reconnect.
+ * A win goes through {@link DatabaseManager#registerWinAsync}. Latency is measured from the call until its future
+ * completes, so it includes the stats loader's batch window and the write-behind flush.
+ *
+ * <p>Runs on H2 by default. Pass {@code -Pharness.jdbcUrl=jdbc:mysql://...} (plus user and password) to point it at
+ * a real MySQL or MariaDB:
+ * <pre>./gradlew loadHarness -Pharness.players=2000 -Pharness.joinsPerSecond=200 -Pharness.seconds=60</pre>
+ */
+public final class LoadHarness {
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int players = Integer.getInteger("harness.players", 1000);
+        int arenas = Integer.getInteger("harness.arenas", 8);
+        int joinsPerSecond = Integer.getInteger("harness.joinsPerSecond", 100);
+        int winsPerSecond = Integer.getInteger("harness.winsPerSecond", 20);
+        int seconds = Integer.getInteger("harness.seconds", 30);
+        String jdbcUrl = System.getProperty("harness.jdbcUrl", "");
+
+        File dataFolder = Files.createTempDirectory("zkoth-harness").toFile();
+        try (TestServer server = TestServer.start(dataFolder)) {
+            if (!jdbcUrl.isEmpty()) {
+                server.getPlugin().getConfig().set("database.type", "mysql");
+                server.getPlugin().getConfig().set("database.jdbc-url", jdbcUrl);
+                server.getPlugin().getConfig().set("database.username", System.getProperty("harness.user", "root"));
+                server.getPlugin().getConfig().set("database.password", System.getProperty("harness.password", ""));
+            }
+            DatabaseManager manager = server.startDatabase();
+            run(manager, players, arenas, joinsPerSecond, winsPerSecond, seconds);
+        }
+    }
+
+    private static void run(DatabaseManager manager, int players, int arenas,
+                            int joinsPerSecond, int winsPerSecond, int seconds) throws InterruptedException {
+        List<UUID> uuids = new ArrayList<>(players);
+        for (int i = 0; i < players; i++) {
+            uuids.add(UUID.randomUUID());
+        }
+
+        LatencyHistogram joinLatency = new LatencyHistogram();
+        LatencyHistogram winLatency = new LatencyHistogram();
+        AtomicLong failures = new AtomicLong();
+        ConcurrentLinkedQueue<CompletableFuture<?>> inFlight = new ConcurrentLinkedQueue<>();
+        PoolSampler pool = new PoolSampler(((MySQLConnector) manager.getDatabaseConnector()).getPoolMXBean());
+        KothDataCache cache = manager.getKothDataCache();
+
+        ScheduledExecutorService load = Executors.newScheduledThreadPool(3);
+        load.scheduleAtFixedRate(pool::sample, 0, 10, TimeUnit.MILLISECONDS);
+        load.scheduleAtFixedRate(() -> {
+            UUID uuid = uuids.get(ThreadLocalRandom.current().nextInt(players));
+            long start = System.nanoTime();
+            cache.invalidatePlayerStats(uuid);
+            manager.registerPlayerAsync(uuid, name(uuid));
+            CompletableFuture<Map<String, Integer>> future = manager.getPlayerStats(uuid);
+            inFlight.add(future.whenComplete((stats, ex) -> record(joinLatency, failures, start, ex)));
+        }, 0, TimeUnit.SECONDS.toNanos(1) / Math.max(1, joinsPerSecond), TimeUnit.NANOSECONDS);
+        if (winsPerSecond > 0) {
+            load.scheduleAtFixedRate(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                UUID uuid = uuids.get(random.nextInt(players));
+                long start = System.nanoTime();
+                CompletableFuture<Boolean> future = manager.registerWinAsync(
+                        new KothWinDTO(uuid, name(uuid), "Arena" + random.nextInt(arenas)));
+                inFlight.add(future.whenComplete((written, ex) ->
+                        record(winLatency, failures, start, ex != null || Boolean.FALSE.equals(written)
+                                ? new IllegalStateException("win not written") : null)));
+            }, 0, TimeUnit.SECONDS.toNanos(1) / winsPerSecond, TimeUnit.NANOSECONDS);
+        }
+
+        long startedAt = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        load.shutdown();
+        load.awaitTermination(10, TimeUnit.SECONDS);
+        // Requests still in flight count towards the run, otherwise a saturated pool would look fast
+        CompletableFuture.allOf(inFlight.toArray(new CompletableFuture[0]))
+                .exceptionally(ex -> null).join();
+        double elapsed = (System.nanoTime() - startedAt) / 1e9;
+
+        System.out.println("=== zKoth-Data load harness ===");
+        System.out.printf("%d players, %d arenas, %ds, target %d joins/s and %d wins/s%n",
+                players, arenas, seconds, joinsPerSecond, winsPerSecond);
+        System.out.println(describe("join", joinLatency, elapsed));
+        System.out.println(describe("win", winLatency, elapsed));
+        System.out.println("failures: " + failures.get());
+        System.out.println("pool: " + pool.describe());
+        for (String line : manager.getQueryReport()) {
+            System.out.println(line);
+        }
+    }
+
+    private static void record(LatencyHistogram histogram, AtomicLong failures, long startNanos, Throwable ex) {
+        if (ex != null) {
+            failures.incrementAndGet();
+            return;
+        }
+        histogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+
+    private static String name(UUID uuid) {
+        return "P" + uuid.toString().substring(0, 8);
+    }
+
+    private static String describe(String operation, LatencyHistogram histogram, double seconds) {
+        return String.format("%-5s | n=%-7d %.1f/s | p50=%.1fms p99=%.1fms max=%.1fms",
+                operation, histogram.getCount(), histogram.getCount() / seconds,
+                histogram.getPercentile(50) / 1000.0, histogram.getPercentile(99) / 1000.0,
+                histogram.getMax() / 1000.0);
+    }
+
+    /**
+     * Samples Hikari's counters. A sample is saturated when every connection is in use and somebody is waiting.
+     */
+    private static final class PoolSampler {
+
+        private final HikariPoolMXBean pool;
+        private long samples;
+        private long saturated;
+        private long activeSum;
+        private int maxActive;
+        private int maxWaiting;
+        private int poolSize;
+
+        PoolSampler(HikariPoolMXBean pool) {
+            this.pool = pool;
+        }
+
+        synchronized void sample() {
+            if (pool == null) {
+                return;
+            }
+            int active = pool.getActiveConnections();
+            int waiting = pool.getThreadsAwaitingConnection();
+            poolSize = Math.max(poolSize, pool.getTotalConnections());
+            samples++;
+            activeSum += active;
+            maxActive = Math.max(maxActive, active);
+            maxWaiting = Math.max(maxWaiting, waiting);
+            if (waiting > 0 && active >= pool.getTotalConnections()) {
+                saturated++;
+            }
+        }
+
+        synchronized String describe() {
+            if (samples == 0) {
+                return "no samples";
+            }
+            return String.format("size=%d active mean=%.1f max=%d | waiting max=%d | saturated %.1f%% of %d samples",
+                    poolSize, (double) activeSum / samples, maxActive, maxWaiting, 100.0 * saturated / samples, samples);
+        }
+    }
+}
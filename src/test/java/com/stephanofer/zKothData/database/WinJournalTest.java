@@ -0,0 +1,54 @@
+package com.stephanofer.zKothData.database;
+
+import com.stephanofer.zKothData.models.KothWinDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link WinJournal} on a temporary folder: compaction while newer wins are still pending and the recovery
+ * of what it kept.
+ */
+class WinJournalTest {
+
+    private static final Logger LOGGER = Logger.getLogger(WinJournalTest.class.getName());
+
+    @TempDir
+    File directory;
+
+    @Test
+    void compactionKeepsTheUnconfirmedWins() throws Exception {
+        File file = new File(directory, "wins.journal");
+        List<Long> seqs = new ArrayList<>();
+        try (WinJournal journal = new WinJournal(directory, 1024, LOGGER)) {
+            for (int i = 0; i < 50; i++) {
+                seqs.add(journal.append(new KothWinDTO(UUID.randomUUID(), "player" + i, "Spawn")));
+            }
+            journal.sync();
+            long before = file.length();
+
+            // The last two wins are still waiting for their batch
+            journal.confirm(seqs.get(47));
+            assertTrue(file.length() < before / 10, "compacted to " + file.length() + " bytes");
+            seqs.add(journal.append(new KothWinDTO(UUID.randomUUID(), "late", "Desert")));
+        }
+
+        try (WinJournal journal = new WinJournal(directory, 1024, LOGGER)) {
+            List<Long> recovered = new ArrayList<>();
+            for (WinJournal.Entry entry : journal.getRecovered()) {
+                recovered.add(entry.getSeq());
+            }
+            assertEquals(Arrays.asList(seqs.get(48), seqs.get(49), seqs.get(50)), recovered);
+            assertEquals("Desert", journal.getRecovered().get(2).getWin().getKothName());
+            assertEquals(seqs.get(50) + 1, journal.append(new KothWinDTO(UUID.randomUUID(), "next", "Spawn")));
+        }
+    }
+}
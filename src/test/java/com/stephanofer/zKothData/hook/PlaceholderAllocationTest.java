@@ -0,0 +1,115 @@
+package com.stephanofer.zKothData.hook;
+
+import com.stephanofer.zKothData.TestServer;
+import com.stephanofer.zKothData.database.DatabaseManager;
+import com.stephanofer.zKothData.models.KothWinDTO;
+import org.bukkit.OfflinePlayer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Placeholders are requested by every scoreboard line of every player, several times a second, so once an
+ * identifier is compiled a request must not allocate. Measured with the JVM's per-thread allocation counter
+ * after the JIT has warmed up; {@code PlaceholderBenchmark} reports the same under {@code -prof gc}.
+ */
+class PlaceholderAllocationTest {
+
+    private static final int WARMUP_CALLS = 200_000;
+    private static final int MEASURED_CALLS = 1_000_000;
+
+    @TempDir
+    File dataFolder;
+
+    private TestServer server;
+    private KothStatsExpansion expansion;
+    private OfflinePlayer player;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = TestServer.start(dataFolder);
+        server.getPlugin().getConfig().set("database.write-behind.flush-interval", 1);
+        DatabaseManager manager = server.startDatabase();
+
+        UUID uuid = UUID.randomUUID();
+        List<CompletableFuture<Boolean>> wins = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            UUID other = UUID.randomUUID();
+            wins.add(manager.registerWinAsync(new KothWinDTO(other, "Player" + i, "Spawn")));
+            wins.add(manager.registerWinAsync(new KothWinDTO(uuid, "Viewer", i % 2 == 0 ? "Spawn" : "Desert")));
+        }
+        CompletableFuture.allOf(wins.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        manager.getKothDataCache().playerJoined(uuid);
+        manager.getPlayerStats(uuid).get(5, TimeUnit.SECONDS);
+
+        expansion = new KothStatsExpansion(server.getPlugin());
+        player = (OfflinePlayer) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{OfflinePlayer.class},
+                (proxy, method, args) -> method.getName().equals("getUniqueId") ? uuid : null);
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void leaderboardPlaceholdersDoNotAllocate() {
+        String[] identifiers = {"rank", "rank_Spawn", "top_1_name", "top_3_wins", "top_Spawn_1_name",
+                "daily_total_wins", "weekly_rank", "monthly_top_1_wins", "season_top_2_name", "unknown"};
+        for (String identifier : identifiers) {
+            double bytes = bytesPerRequest(identifier);
+            assertTrue(bytes < 1, identifier + " allocated " + bytes + " B/op");
+        }
+    }
+
+    @Test
+    void statsPlaceholdersDoNotAllocate() {
+        // The player is online, so their stats are read without going through the Guava cache
+        String[] identifiers = {"total_wins", "wins_Spawn", "wins_Desert", "wins_Unknown"};
+        String[] expected = {"20", "10", "10", "0"};
+        for (int i = 0; i < identifiers.length; i++) {
+            String identifier = identifiers[i];
+            assertEquals(expected[i], expansion.onRequest(player, identifier), identifier);
+            double bytes = bytesPerRequest(identifier);
+            assertTrue(bytes < 1, identifier + " allocated " + bytes + " B/op");
+        }
+    }
+
+    private double bytesPerRequest(String identifier) {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        int checksum = 0;
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            checksum += length(expansion.onRequest(player, identifier));
+        }
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            checksum += length(expansion.onRequest(player, identifier));
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        // Keeps the calls from being optimized away
+        assertNotEquals(Integer.MIN_VALUE, checksum);
+        return allocated / (double) MEASURED_CALLS;
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+}
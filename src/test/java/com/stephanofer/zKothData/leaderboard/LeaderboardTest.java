@@ -0,0 +1,71 @@
+package com.stephanofer.zKothData.leaderboard;
+
+import com.stephanofer.zKothData.models.SortedPlayer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeaderboardTest {
+
+    @Test
+    void topIsRepublishedOnlyWhenAWinReachesIt() {
+        Leaderboard leaderboard = new Leaderboard(2);
+        List<SortedPlayer> players = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            players.add(new SortedPlayer(UUID.randomUUID(), "player" + i, 10 - i));
+        }
+        leaderboard.load(players);
+        SortedPlayer first = leaderboard.getTop(1);
+        SortedPlayer second = leaderboard.getTop(2);
+
+        // 6 -> 7 wins, still below the second place with 9
+        leaderboard.increment(players.get(4).getUuid(), null, 1);
+        assertSame(first, leaderboard.getTop(1));
+        assertSame(second, leaderboard.getTop(2));
+
+        // 7 -> 12 wins, passes the first place
+        leaderboard.increment(players.get(4).getUuid(), null, 5);
+        assertEquals(players.get(4).getUuid(), leaderboard.getTop(1).getUuid());
+        assertEquals(first.getUuid(), leaderboard.getTop(2).getUuid());
+
+        // A win inside the top always shows up
+        leaderboard.increment(first.getUuid(), null, 1);
+        assertEquals(11, leaderboard.getTop(2).getTotalWins());
+    }
+
+    @Test
+    void topFillsUpWhileItHasFreeSlots() {
+        Leaderboard leaderboard = new Leaderboard(3);
+        UUID uuid = UUID.randomUUID();
+        leaderboard.increment(uuid, "first", 1);
+        assertEquals(uuid, leaderboard.getTop(1).getUuid());
+        assertNull(leaderboard.getTop(2));
+    }
+
+    @Test
+    void ranksStayConsistentWhileWinsArrive() throws Exception {
+        Leaderboard leaderboard = new Leaderboard(10);
+        UUID leader = UUID.randomUUID();
+        UUID chaser = UUID.randomUUID();
+        leaderboard.increment(leader, "leader", 1_000_000);
+        leaderboard.increment(chaser, "chaser", 1);
+
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 200_000; i++) {
+                leaderboard.increment(chaser, null, 1);
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            // The chaser never catches up and nobody else exists, so any other rank is a torn read
+            assertEquals(1, leaderboard.getRank(leader));
+            assertEquals(2, leaderboard.getRank(chaser));
+        }
+        writer.join();
+        assertEquals(200_001, leaderboard.getWins(chaser));
+    }
+}